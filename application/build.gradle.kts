@@ -2,6 +2,7 @@ plugins {
     java
     application
     id("com.google.osdetector") version "1.7.0"
+    id("me.champeau.jmh")
 }
 buildscript {
     repositories {
@@ -21,35 +22,9 @@ application {
     mainModule.set("net.octyl.clockresonator.app")
 }
 
-repositories {
-    maven {
-        name = "Sonatype Snapshots"
-        url = uri("https://oss.sonatype.org/content/repositories/snapshots/")
-    }
-    mavenLocal {
-        content {
-            includeGroup("com.cronutils")
-        }
-    }
-}
-
-configurations.all {
-    resolutionStrategy {
-        dependencySubstitution {
-            val injectApi = libs.jakarta.injectApi.get()
-            substitute(module("javax.inject:javax.inject:1"))
-                .using(
-                    module(
-                        "${injectApi.module.group}:${injectApi.module.name}:${injectApi.versionConstraint.requiredVersion}"
-                    )
-                )
-        }
-    }
-    // This is just noise for us, we don't need it
-    exclude(group = "com.google.guava", module = "listenablefuture")
-}
-
 dependencies {
+    implementation(project(":core"))
+
     compileOnly(libs.jetbrains.annotations)
     compileOnly(libs.checkerframework.qual)
 
@@ -65,16 +40,9 @@ dependencies {
 
     implementation(libs.directories)
 
-    implementation(platform(libs.jackson.bom))
-    implementation(libs.jackson.databind)
-    implementation(libs.jackson.datatype.jsr310)
-    implementation(libs.jackson.datatype.jdk8)
-
     implementation(platform(libs.reactor.bom))
     implementation(libs.reactor.core)
 
-    implementation(libs.cronutils)
-
     for (lib in listOf(libs.javafx.base, libs.javafx.controls, libs.javafx.graphics)) {
         implementation(lib)
         implementation(variantOf(lib) {
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.fx;
+
+import javafx.beans.property.SimpleDoubleProperty;
+import net.octyl.clockresonator.app.event.ClockTickEvent;
+import net.octyl.clockresonator.app.tick.TickScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one wake of the {@link ProgressEngine} where nearly every tracked progress value is due to change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressEngineBenchmark {
+    // Each step moves every task by at least one visible progress step (1/10,000th of its duration)
+    private static final long DURATION_MILLIS = 1_000_000_000L;
+    private static final long STEP_MILLIS = DURATION_MILLIS / 10_000 + 1;
+    // Restart before progress reaches its cap, where tasks stop changing
+    private static final int STEPS_PER_ROUND = 9_000;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private ProgressEngine engine;
+    private long start;
+    private int step;
+
+    @Setup
+    public void setup() {
+        startRound();
+    }
+
+    private void startRound() {
+        engine = new ProgressEngine(new TickScheduler(Runnable::run, () -> engine), () -> true);
+        start = System.currentTimeMillis();
+        var random = new SplittableRandom(42);
+        for (int i = 0; i < size; i++) {
+            // Spread the durations out a little, so the tasks don't all step in lockstep
+            var end = start + DURATION_MILLIS + random.nextLong(DURATION_MILLIS / 100);
+            engine.track(
+                Instant.ofEpochMilli(start), Instant.ofEpochMilli(end), new SimpleDoubleProperty(), () -> true
+            );
+        }
+        step = 0;
+    }
+
+    @Benchmark
+    public Optional<Instant> tick() {
+        if (++step == STEPS_PER_ROUND) {
+            startRound();
+            step = 1;
+        }
+        return engine.onClockTick(new ClockTickEvent(Instant.ofEpochMilli(start + step * STEP_MILLIS)));
+    }
+}
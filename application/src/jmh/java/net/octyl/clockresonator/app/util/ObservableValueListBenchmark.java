@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.util;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures keeping an {@link ObservableValueList} in sync with its map, at several sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObservableValueListBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private ObservableMap<Integer, String> map;
+    private ObservableValueList<String> list;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup
+    public void setup() {
+        map = FXCollections.observableMap(new HashMap<>());
+        list = new ObservableValueList<>(map, Comparator.naturalOrder());
+        list.batch(() -> {
+            for (int i = 0; i < size; i++) {
+                map.put(i, value(i));
+            }
+        });
+    }
+
+    private static String value(int key) {
+        return String.format("%08d", key);
+    }
+
+    /**
+     * Remove a random value and insert it again, keeping the size steady.
+     */
+    @Benchmark
+    public void removeAndInsert() {
+        int key = random.nextInt(size);
+        map.remove(key);
+        map.put(key, value(key));
+    }
+
+    @Benchmark
+    public String get() {
+        return list.get(random.nextInt(size));
+    }
+}
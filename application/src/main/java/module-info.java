@@ -19,13 +19,12 @@
 module net.octyl.clockresonator.app {
     exports net.octyl.clockresonator.app;
     requires static java.inject;
+    requires net.octyl.clockresonator.core;
     requires com.cronutils;
     requires com.google.common;
     requires com.fasterxml.jackson.annotation;
     requires com.fasterxml.jackson.core;
     requires com.fasterxml.jackson.databind;
-    requires com.fasterxml.jackson.datatype.jdk8;
-    requires com.fasterxml.jackson.datatype.jsr310;
     requires dagger;
     requires dev.dirs;
     requires java.base;
@@ -36,8 +35,6 @@ module net.octyl.clockresonator.app {
     requires org.kordamp.ikonli.core;
     requires org.kordamp.ikonli.javafx;
     requires org.kordamp.ikonli.fontawesome5;
-    // Required for event bus to work
-    opens net.octyl.clockresonator.app.fx to com.google.common, com.fasterxml.jackson.databind;
-    // Required for serialization to work
-    opens net.octyl.clockresonator.app.model to com.fasterxml.jackson.databind;
+    // Required for window state serialization to work
+    opens net.octyl.clockresonator.app.fx to com.fasterxml.jackson.databind;
 }
@@ -18,22 +18,24 @@
 
 package net.octyl.clockresonator.app;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import javafx.application.Application;
-import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
 import javafx.stage.Stage;
-import net.octyl.clockresonator.app.event.ClockTickEvent;
+import net.octyl.clockresonator.app.headless.HeadlessDaemon;
 import net.octyl.clockresonator.app.inject.ApplicationComponent;
 import net.octyl.clockresonator.app.inject.DaggerApplicationComponent;
+import net.octyl.clockresonator.core.notify.LoggingDueTaskSink;
 import org.apache.logging.log4j.Level;
 
 import java.io.IOException;
-import java.time.Instant;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
 
 public class ClockResonator extends Application {
     public static void main(String[] args) {
+        if (List.of(args).contains(HeadlessDaemon.HEADLESS_FLAG)) {
+            HeadlessDaemon.run(List.of(args));
+            return;
+        }
         Application.launch(args);
     }
 
@@ -46,7 +48,11 @@ public class ClockResonator extends Application {
                 Level.ERROR, "Error occurred on FX Thread", e
             )
         );
-        component.taskEntryManager().initialize();
+        component.taskEntryManager().addSaveFailureListener(e ->
+            component.errorReporter().reportError(Level.ERROR, "Failed to save task entries", e)
+        );
+        component.taskEntryManager().initialize()
+            .whenComplete(component.errorReporter().bind(Level.ERROR, "Failed to load task entries"));
         try {
             component.windowRestorer().attach("primary", stage);
         } catch (IOException e) {
@@ -54,7 +60,17 @@ public class ClockResonator extends Application {
                 Level.WARN, "Failed to restore window state", e
             );
         }
-        startClockTicker();
+        var tickScheduler = component.tickScheduler();
+        // Nothing to update while the window can't be seen
+        InvalidationListener pauseTicks = obs -> tickScheduler.setPaused(stage.isIconified() || !stage.isShowing());
+        stage.iconifiedProperty().addListener(pauseTicks);
+        stage.showingProperty().addListener(pauseTicks);
+        pauseTicks.invalidated(null);
+        tickScheduler.start();
+        var dueTaskDispatcher = component.dueTaskDispatcher();
+        dueTaskDispatcher.addSink(new LoggingDueTaskSink());
+        dueTaskDispatcher.addSink(component.dueTaskToaster());
+        dueTaskDispatcher.start();
 
         stage.setTitle("Clock Resonator (" + component.version() + ")");
         stage.setScene(
@@ -65,17 +81,4 @@ public class ClockResonator extends Application {
         );
         stage.show();
     }
-
-    private void startClockTicker() {
-        var executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
-            .setNameFormat("clock-resonator-tick-%d")
-            .setDaemon(true)
-            .build());
-        executor.scheduleAtFixedRate(
-            () -> Platform.runLater(() -> component.eventBus().post(new ClockTickEvent(Instant.now()))),
-            0,
-            100,
-            TimeUnit.MILLISECONDS
-        );
-    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.fx;
+
+import javafx.util.Duration;
+import net.octyl.clockresonator.core.model.TaskOccurrence;
+import net.octyl.clockresonator.core.notify.DueTaskSink;
+import org.controlsfx.control.Notifications;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Shows a toast notification for each batch of due entries.
+ */
+@Singleton
+public class DueTaskToaster implements DueTaskSink {
+    private static final int MAX_NAMED = 5;
+    // Past this many toasts on screen, they're replaced by a summary
+    private static final int MAX_SHOWN = 3;
+    private static final Duration SHOW_TIME = Duration.seconds(10);
+
+    private final Executor javaFxExecutor;
+
+    @Inject
+    public DueTaskToaster(@JavaFx Executor javaFxExecutor) {
+        this.javaFxExecutor = javaFxExecutor;
+    }
+
+    @Override
+    public void onDue(List<TaskOccurrence> due) {
+        String title;
+        String text;
+        if (due.size() == 1) {
+            title = "Task due";
+            text = "'" + due.get(0).entry().name() + "' is due";
+        } else {
+            title = due.size() + " tasks due";
+            text = due.stream()
+                .limit(MAX_NAMED)
+                .map(occurrence -> "'" + occurrence.entry().name() + "'")
+                .collect(Collectors.joining("\n"));
+            if (due.size() > MAX_NAMED) {
+                text += "\nand " + (due.size() - MAX_NAMED) + " more";
+            }
+        }
+        var message = text;
+        javaFxExecutor.execute(() -> Notifications.create()
+            .title(title)
+            .text(message)
+            .hideAfter(SHOW_TIME)
+            .threshold(MAX_SHOWN, Notifications.create().title("Several tasks are due"))
+            .showInformation());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.fx;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableMap;
+import net.octyl.clockresonator.app.util.ObservableValueList;
+import net.octyl.clockresonator.core.model.TaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntryChange;
+import net.octyl.clockresonator.core.model.TaskEntryManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Mirrors the entries of the {@link TaskEntryManager} into JavaFX collections, on the JavaFX thread.
+ *
+ * <p>
+ * Changes made on the JavaFX thread are visible immediately. Changes from other threads are queued and applied in
+ * order, each batch as a single list change.
+ * </p>
+ */
+@Singleton
+public class ObservableTaskEntries {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final Executor javaFxExecutor;
+    private final ObservableMap<String, TaskEntry> entries = FXCollections.observableMap(new HashMap<>());
+    private final ObservableValueList<TaskEntry> entriesValueList = new ObservableValueList<>(
+        entries, Comparator.comparing(TaskEntry::id)
+    );
+    private final Queue<List<TaskEntryChange>> pending = new ConcurrentLinkedQueue<>();
+    private boolean shownFirstEntries;
+
+    @Inject
+    public ObservableTaskEntries(TaskEntryManager manager, @JavaFx Executor javaFxExecutor) {
+        this.javaFxExecutor = javaFxExecutor;
+        manager.addListener(this::enqueue);
+    }
+
+    public ObservableList<TaskEntry> getEntries() {
+        return entriesValueList;
+    }
+
+    private void enqueue(List<TaskEntryChange> changes) {
+        pending.add(changes);
+        if (Platform.isFxApplicationThread()) {
+            // Anything queued earlier goes first
+            applyPending();
+        } else {
+            javaFxExecutor.execute(this::applyPending);
+        }
+    }
+
+    private void applyPending() {
+        List<TaskEntryChange> changes;
+        while ((changes = pending.poll()) != null) {
+            var batch = changes;
+            entriesValueList.batch(() -> {
+                for (TaskEntryChange change : batch) {
+                    if (change.added() != null) {
+                        entries.put(change.id(), change.added());
+                    } else {
+                        entries.remove(change.id());
+                    }
+                }
+            });
+        }
+        if (!shownFirstEntries && !entriesValueList.isEmpty()) {
+            shownFirstEntries = true;
+            ProcessHandle.current().info().startInstant().ifPresent(start -> LOGGER.info(() ->
+                "Showing first task entries " + Duration.between(start, Instant.now()).toMillis()
+                    + "ms after startup"
+            ));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.fx;
+
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import net.octyl.clockresonator.app.event.ClockTickEvent;
+import net.octyl.clockresonator.app.tick.TickScheduler;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Computes the progress of every tracked task from primitive columns, so updating it doesn't allocate per task.
+ *
+ * <p>
+ * Each tracked task has a dense slot index into the columns. Closing a slot moves the last one into its place.
+ * The engine holds a single {@link TickScheduler} registration for the earliest visible change of any slot, and
+ * only writes a progress property when its value changed. All methods must be called on the JavaFX thread.
+ * </p>
+ */
+@Singleton
+public class ProgressEngine {
+    private static final Logger LOGGER = LogManager.getLogger();
+    // Progress is displayed as a percentage with two decimal places, so it only visibly changes in these steps
+    private static final double PROGRESS_STEPS = 10_000;
+    // Never reach 100, as the task is never "complete"
+    private static final double MAX_PROGRESS = 0.9999;
+    private static final long NEVER = Long.MAX_VALUE;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * A tracked progress value. Closing it stops all further updates.
+     */
+    public final class Slot implements AutoCloseable {
+        private int index;
+
+        private Slot(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void close() {
+            checkState(onOwnerThread.getAsBoolean(), "Cross-thread slot close!");
+            if (index >= 0) {
+                removeSlot(index);
+                index = -1;
+            }
+        }
+    }
+
+    private final BooleanSupplier onOwnerThread;
+    private final TickScheduler.Registration registration;
+    private long scheduledDeadline = NEVER;
+    private int size;
+    private long[] startMillis = new long[INITIAL_CAPACITY];
+    private long[] endMillis = new long[INITIAL_CAPACITY];
+    private long[] nextChangeMillis = new long[INITIAL_CAPACITY];
+    private double[] shownProgress = new double[INITIAL_CAPACITY];
+    private DoubleProperty[] properties = new DoubleProperty[INITIAL_CAPACITY];
+    private BooleanSupplier[] liveness = new BooleanSupplier[INITIAL_CAPACITY];
+    private Slot[] slots = new Slot[INITIAL_CAPACITY];
+
+    @Inject
+    public ProgressEngine(TickScheduler tickScheduler) {
+        this(tickScheduler, Platform::isFxApplicationThread);
+    }
+
+    // Allows driving the engine without an FX toolkit, e.g. in benchmarks
+    ProgressEngine(TickScheduler tickScheduler, BooleanSupplier onOwnerThread) {
+        this.onOwnerThread = onOwnerThread;
+        this.registration = tickScheduler.register(this::onClockTick, Optional.empty());
+    }
+
+    /**
+     * Start tracking progress from {@code start} to {@code end}.
+     *
+     * @param start the start of the period
+     * @param end the end of the period
+     * @param progress the property to write the progress to
+     * @param live checked when the progress is due to change, if it returns {@code false} the slot is closed
+     * @return the slot, which should be closed when the progress is no longer needed
+     */
+    public Slot track(Instant start, Instant end, DoubleProperty progress, BooleanSupplier live) {
+        checkState(onOwnerThread.getAsBoolean(), "Cross-thread tracking!");
+        if (size == slots.length) {
+            grow();
+        }
+        int index = size++;
+        var slot = new Slot(index);
+        startMillis[index] = start.toEpochMilli();
+        endMillis[index] = end.toEpochMilli();
+        // Always write the first value
+        shownProgress[index] = Double.NaN;
+        properties[index] = progress;
+        liveness[index] = live;
+        slots[index] = slot;
+        update(index, System.currentTimeMillis());
+        if (nextChangeMillis[index] < scheduledDeadline) {
+            scheduledDeadline = nextChangeMillis[index];
+            registration.wakeAt(Instant.ofEpochMilli(scheduledDeadline));
+        }
+        return slot;
+    }
+
+    /**
+     * {@return the number of progress values being tracked}
+     */
+    public int trackedCount() {
+        return size;
+    }
+
+    Optional<Instant> onClockTick(ClockTickEvent event) {
+        checkState(onOwnerThread.getAsBoolean(), "Cross-thread eventing!");
+        long earliest = updateDue(event.now().toEpochMilli());
+        return earliest == NEVER ? Optional.empty() : Optional.of(Instant.ofEpochMilli(earliest));
+    }
+
+    /**
+     * Update every slot whose progress is due to change. This runs over every slot on each tick, so it must not
+     * allocate.
+     *
+     * @param now the current time, in epoch millis
+     * @return the earliest time any slot's progress changes next, or {@link #NEVER}
+     */
+    long updateDue(long now) {
+        long earliest = NEVER;
+        int updated = 0;
+        int i = 0;
+        while (i < size) {
+            if (nextChangeMillis[i] <= now) {
+                if (!liveness[i].getAsBoolean()) {
+                    // The last slot moves here, so look at this index again
+                    slots[i].close();
+                    continue;
+                }
+                update(i, now);
+                updated++;
+            }
+            earliest = Math.min(earliest, nextChangeMillis[i]);
+            i++;
+        }
+        scheduledDeadline = earliest;
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Updated {} of {} progress values", updated, size);
+        }
+        return earliest;
+    }
+
+    private void update(int index, long now) {
+        long start = startMillis[index];
+        long fullDurationMillis = endMillis[index] - start;
+        long currentDurationMillis = now - start;
+        double progress = Math.min(MAX_PROGRESS, currentDurationMillis / (double) fullDurationMillis);
+        if (Double.compare(progress, shownProgress[index]) != 0) {
+            shownProgress[index] = progress;
+            properties[index].set(progress);
+        }
+        if (progress >= MAX_PROGRESS || fullDurationMillis <= 0) {
+            nextChangeMillis[index] = NEVER;
+            return;
+        }
+        double nextStep = Math.min(MAX_PROGRESS, (Math.floor(progress * PROGRESS_STEPS) + 1) / PROGRESS_STEPS);
+        var nextStepMillis = (long) Math.ceil(nextStep * fullDurationMillis);
+        nextChangeMillis[index] = start + Math.max(nextStepMillis, currentDurationMillis + 1);
+    }
+
+    private void removeSlot(int index) {
+        int last = --size;
+        if (index != last) {
+            startMillis[index] = startMillis[last];
+            endMillis[index] = endMillis[last];
+            nextChangeMillis[index] = nextChangeMillis[last];
+            shownProgress[index] = shownProgress[last];
+            properties[index] = properties[last];
+            liveness[index] = liveness[last];
+            slots[index] = slots[last];
+            slots[index].index = index;
+        }
+        properties[last] = null;
+        liveness[last] = null;
+        slots[last] = null;
+    }
+
+    private void grow() {
+        int capacity = slots.length * 2;
+        startMillis = Arrays.copyOf(startMillis, capacity);
+        endMillis = Arrays.copyOf(endMillis, capacity);
+        nextChangeMillis = Arrays.copyOf(nextChangeMillis, capacity);
+        shownProgress = Arrays.copyOf(shownProgress, capacity);
+        properties = Arrays.copyOf(properties, capacity);
+        liveness = Arrays.copyOf(liveness, capacity);
+        slots = Arrays.copyOf(slots, capacity);
+    }
+}
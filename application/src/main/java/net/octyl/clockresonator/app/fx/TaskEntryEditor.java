@@ -22,7 +22,7 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import net.octyl.clockresonator.app.fx.def.MainScope;
 import net.octyl.clockresonator.app.fx.def.TaskEntryEditorComponent;
-import net.octyl.clockresonator.app.model.TaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntry;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
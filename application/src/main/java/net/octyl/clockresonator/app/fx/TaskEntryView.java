@@ -18,9 +18,6 @@
 
 package net.octyl.clockresonator.app.fx;
 
-import com.google.common.eventbus.EventBus;
-import com.google.common.eventbus.Subscribe;
-import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.geometry.Pos;
@@ -29,10 +26,10 @@ import javafx.scene.control.Label;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import net.octyl.clockresonator.app.event.ClockTickEvent;
-import net.octyl.clockresonator.app.model.OneTimeTaskEntry;
-import net.octyl.clockresonator.app.model.CronTaskEntry;
-import net.octyl.clockresonator.app.model.TaskEntry;
+import net.octyl.clockresonator.core.model.OneTimeTaskEntry;
+import net.octyl.clockresonator.core.model.CronTaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntryManager;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -41,38 +38,35 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
-import static com.google.common.base.Preconditions.checkState;
-
 /**
  * Implements the view over a {@link TaskEntry}.
  */
 public class TaskEntryView {
-
     @Singleton
     public static final class Factory {
-        private final EventBus eventBus;
+        private final ProgressEngine progressEngine;
+        private final TaskEntryManager taskEntryManager;
 
         @Inject
-        public Factory(EventBus eventBus) {
-            this.eventBus = eventBus;
+        public Factory(ProgressEngine progressEngine, TaskEntryManager taskEntryManager) {
+            this.progressEngine = progressEngine;
+            this.taskEntryManager = taskEntryManager;
         }
 
         public TaskEntryView wrap(TaskEntry taskEntry) {
             var view = new TaskEntryView(taskEntry);
-            view.updateProgress(Instant.now());
-            eventBus.register(new Object() {
-                @Subscribe
-                public void onClockTick(ClockTickEvent event) {
-                    checkState(Platform.isFxApplicationThread(), "Cross-thread eventing!");
-                    view.updateProgress(event.now());
-                }
-            });
+            // Ties the slot to the entry's lifetime, even if nothing disposes this view
+            view.progressSlot = progressEngine.track(
+                taskEntry.lastOccurrence(), taskEntry.nextOccurrence(), view.progress,
+                () -> taskEntryManager.isCurrent(taskEntry)
+            );
             return view;
         }
     }
 
     private final TaskEntry taskEntry;
     private final DoubleProperty progress = new SimpleDoubleProperty(this, "progress", 0.0);
+    private ProgressEngine.Slot progressSlot;
 
     public TaskEntryView(TaskEntry taskEntry) {
         this.taskEntry = taskEntry;
@@ -82,6 +76,16 @@ public class TaskEntryView {
         return taskEntry;
     }
 
+    /**
+     * Stop updating this view. Called once the entry has left the table.
+     */
+    public void dispose() {
+        if (progressSlot != null) {
+            progressSlot.close();
+            progressSlot = null;
+        }
+    }
+
     public DoubleProperty progressProperty() {
         return progress;
     }
@@ -94,16 +98,6 @@ public class TaskEntryView {
         this.progress.set(progress);
     }
 
-    private void updateProgress(Instant now) {
-        var start = taskEntry.lastOccurrence();
-        var end = taskEntry.nextOccurrence();
-        var fullDurationMillis = Duration.between(start, end).toMillis();
-        var currentDurationMillis = Duration.between(start, now).toMillis();
-        // Never reach 100, as the task is never "complete"
-        double progress = Math.min(0.9999, currentDurationMillis / (double) fullDurationMillis);
-        setProgress(progress);
-    }
-
     public Node render(TaskEntry entry) {
         var nameLabel = new Label(entry.name());
         nameLabel.setStyle("""
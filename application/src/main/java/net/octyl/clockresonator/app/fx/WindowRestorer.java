@@ -20,22 +20,24 @@ package net.octyl.clockresonator.app.fx;
 
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import dev.dirs.ProjectDirectories;
+import javafx.beans.InvalidationListener;
 import javafx.stage.Stage;
 import net.octyl.clockresonator.app.util.ErrorReporter;
+import net.octyl.clockresonator.core.persist.PersistenceService;
+import net.octyl.clockresonator.core.util.ConflatingSink;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
-import reactor.core.scheduler.Schedulers;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * Restores the state of a window after application relaunch.
@@ -43,6 +45,11 @@ import java.time.Duration;
 @Singleton
 public class WindowRestorer {
     private static final Logger LOGGER = LogManager.getLogger();
+    // Moving or resizing a window fires many changes, this lets them settle before snapshotting. The persistence
+    // service then decides when the snapshot is committed.
+    private static final Duration SAVE_DELAY = Duration.ofMillis(100L);
+    // The source name for the persistence service's latency budget
+    private static final String PERSISTENCE_SOURCE = "windowState";
 
     // https://github.com/google/dagger/issues/2106
     // Wrapping the records prevents dagger from observing them and exploding
@@ -74,24 +81,25 @@ public class WindowRestorer {
 
     private final JsonMapper jsonMapper;
     private final Path windowDataFolder;
-    private final Sinks.Many<DaggerHack.StateWithId> stateSaveSink;
+    private final PersistenceService persistence;
+    private final ErrorReporter errorReporter;
+    // Only used on the JavaFX thread
+    private final Map<String, Stage> windows = new HashMap<>();
+    // Windows are only read on the JavaFX thread, so that's where their state is snapshotted
+    private final ConflatingSink<String, DaggerHack.StateWithId> stateSaveSink;
 
     @Inject
-    public WindowRestorer(JsonMapper jsonMapper, ProjectDirectories projectDirs, ErrorReporter errorReporter) {
+    public WindowRestorer(JsonMapper jsonMapper, ProjectDirectories projectDirs, PersistenceService persistence,
+                          ErrorReporter errorReporter, @JavaFx Executor javaFxExecutor) {
         this.jsonMapper = jsonMapper;
         this.windowDataFolder = Path.of(projectDirs.dataLocalDir, "window-state");
-        this.stateSaveSink = Sinks.many().unicast().onBackpressureBuffer();
-        this.stateSaveSink.asFlux()
-            .sampleTimeout(__ -> Mono.delay(Duration.ofSeconds(1L)))
-            .doOnNext(state -> {
-                try {
-                    saveState(state.identifier, state.state);
-                } catch (IOException e) {
-                    errorReporter.reportError(Level.WARN, "Failed to save window state", e);
-                }
-            })
-            .subscribeOn(Schedulers.boundedElastic())
-            .subscribe();
+        this.persistence = persistence;
+        this.errorReporter = errorReporter;
+        this.stateSaveSink = new ConflatingSink<>(
+            windows, SAVE_DELAY, Integer.MAX_VALUE, javaFxExecutor,
+            identifier -> new DaggerHack.StateWithId(identifier, DaggerHack.State.from(windows.get(identifier))),
+            states -> states.forEach(state -> saveState(state.identifier, state.state))
+        );
     }
 
     private Path statePathFor(String identifier) {
@@ -110,21 +118,13 @@ public class WindowRestorer {
         if (Files.exists(statePathFor(identifier))) {
             initializeFromState(identifier, window);
         }
-        window.xProperty().addListener(observable -> stateSaveSink.tryEmitNext(new DaggerHack.StateWithId(
-            identifier, DaggerHack.State.from(window)
-        )));
-        window.yProperty().addListener(observable -> stateSaveSink.tryEmitNext(new DaggerHack.StateWithId(
-            identifier, DaggerHack.State.from(window)
-        )));
-        window.widthProperty().addListener(observable -> stateSaveSink.tryEmitNext(new DaggerHack.StateWithId(
-            identifier, DaggerHack.State.from(window)
-        )));
-        window.heightProperty().addListener(observable -> stateSaveSink.tryEmitNext(new DaggerHack.StateWithId(
-            identifier, DaggerHack.State.from(window)
-        )));
-        window.maximizedProperty().addListener(observable -> stateSaveSink.tryEmitNext(new DaggerHack.StateWithId(
-            identifier, DaggerHack.State.from(window)
-        )));
+        windows.put(identifier, window);
+        InvalidationListener saveState = observable -> stateSaveSink.mark(identifier);
+        window.xProperty().addListener(saveState);
+        window.yProperty().addListener(saveState);
+        window.widthProperty().addListener(saveState);
+        window.heightProperty().addListener(saveState);
+        window.maximizedProperty().addListener(saveState);
     }
 
     private void initializeFromState(String identifier, Stage window) throws IOException {
@@ -137,16 +137,16 @@ public class WindowRestorer {
         window.setMaximized(state.maximized);
     }
 
-    private void saveState(String identifier, DaggerHack.State state) throws IOException {
-        LOGGER.info(() -> "Saving state, id=" + identifier + ", state=" + state);
-        var finalPath = statePathFor(identifier);
-        Files.createDirectories(windowDataFolder);
-        var tmp = Files.createTempFile(windowDataFolder, "tmp", finalPath.getFileName().toString());
+    private void saveState(String identifier, DaggerHack.State state) {
+        LOGGER.debug(() -> "Saving state, id=" + identifier + ", state=" + state);
+        byte[] bytes;
         try {
-            jsonMapper.writeValue(tmp.toFile(), state);
-            Files.move(tmp, finalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-        } finally {
-            Files.deleteIfExists(tmp);
+            bytes = jsonMapper.writeValueAsBytes(state);
+        } catch (IOException e) {
+            errorReporter.reportError(Level.WARN, "Failed to save window state", e);
+            return;
         }
+        persistence.replace(statePathFor(identifier), bytes, persistence.latencyBudget(PERSISTENCE_SOURCE))
+            .whenComplete(errorReporter.bind(Level.WARN, "Failed to save window state"));
     }
 }
@@ -21,9 +21,8 @@ package net.octyl.clockresonator.app.fx.def;
 import dagger.Module;
 import dagger.Provides;
 import javafx.application.Platform;
-import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.binding.Bindings;
-import javafx.collections.ListChangeListener;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
@@ -39,15 +38,18 @@ import javafx.scene.control.cell.TextFieldTableCell;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
+import net.octyl.clockresonator.app.fx.JavaFx;
 import net.octyl.clockresonator.app.fx.LabeledProgressBarTableCell;
+import net.octyl.clockresonator.app.fx.ObservableTaskEntries;
 import net.octyl.clockresonator.app.fx.TaskEntryEditor;
 import net.octyl.clockresonator.app.fx.TaskEntryView;
-import net.octyl.clockresonator.app.model.IntervalTaskEntry;
-import net.octyl.clockresonator.app.model.OneTimeTaskEntry;
-import net.octyl.clockresonator.app.model.CronTaskEntry;
-import net.octyl.clockresonator.app.model.TaskEntryManager;
 import net.octyl.clockresonator.app.util.FXCollections2;
+import net.octyl.clockresonator.app.util.IncrementalSortedList;
 import net.octyl.clockresonator.app.util.OS;
+import net.octyl.clockresonator.core.model.IntervalTaskEntry;
+import net.octyl.clockresonator.core.model.OneTimeTaskEntry;
+import net.octyl.clockresonator.core.model.CronTaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntryManager;
 import org.kordamp.ikonli.fontawesome5.FontAwesomeSolid;
 import org.kordamp.ikonli.javafx.FontIcon;
 
@@ -61,6 +63,7 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 @Module
 public class MainScene {
@@ -206,9 +209,11 @@ public class MainScene {
                 .filter(response -> response == ButtonType.OK)
                 .ifPresent(response -> {
                     var complete = Instant.now();
-                    for (TaskEntryView item : items) {
-                        item.taskEntry().nextTaskEntry(complete).ifPresent(manager::put);
-                    }
+                    manager.batch(tx -> {
+                        for (TaskEntryView item : items) {
+                            item.taskEntry().nextTaskEntry(complete).ifPresent(tx::put);
+                        }
+                    });
                 });
         });
         return button;
@@ -239,9 +244,7 @@ public class MainScene {
             alert.showAndWait()
                 .filter(response -> response == ButtonType.OK)
                 .ifPresent(response -> {
-                    for (TaskEntryView item : items) {
-                        manager.delete(item.taskEntry().id());
-                    }
+                    manager.deleteAll(items.stream().map(item -> item.taskEntry().id()).toList());
                 });
         });
         return button;
@@ -251,13 +254,22 @@ public class MainScene {
     @MainScope
     @Def
     public static TableView<TaskEntryView> mainTable(
-        TaskEntryManager taskEntryManager,
-        TaskEntryView.Factory taskEntryViewFactory
+        ObservableTaskEntries taskEntries,
+        TaskEntryView.Factory taskEntryViewFactory,
+        @JavaFx Executor javaFxExecutor
     ) {
-        var entryViews = FXCollections2.map(taskEntryManager.getEntries(), taskEntryViewFactory::wrap);
-        var sortedEntries = entryViews.sorted(null);
+        var entryViews = FXCollections2.map(
+            taskEntries.getEntries(), taskEntryViewFactory::wrap, TaskEntryView::dispose
+        );
+        // Progress is the only cell value that changes, the others are fixed per entry.
+        // Moved rows are re-positioned once per batch of ticks, rather than re-sorting for every change.
+        var sortedEntries = new IncrementalSortedList<>(
+            entryViews, v -> new Observable[] {v.progressProperty()}, javaFxExecutor
+        );
         var view = new TableView<>(sortedEntries);
         sortedEntries.comparatorProperty().bind(view.comparatorProperty());
+        // The list keeps itself sorted by the bound comparator
+        view.setSortPolicy(table -> true);
 
         view.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
@@ -323,27 +335,6 @@ public class MainScene {
         view.getSortOrder().add(progressColumn);
         progressColumn.setSortType(TableColumn.SortType.DESCENDING);
 
-        // We need to re-sort when a property changes
-        var sortInvalidation = (InvalidationListener) obs -> view.sort();
-        view.getItems().addListener((ListChangeListener<TaskEntryView>) c -> {
-            while (c.next()) {
-                if (c.wasRemoved()) {
-                    for (var removed : c.getRemoved()) {
-                        for (var column : view.getColumns()) {
-                            column.getCellObservableValue(removed).removeListener(sortInvalidation);
-                        }
-                    }
-                }
-                if (c.wasAdded()) {
-                    for (var added : c.getAddedSubList()) {
-                        for (var column : view.getColumns()) {
-                            column.getCellObservableValue(added).addListener(sortInvalidation);
-                        }
-                    }
-                }
-            }
-        });
-
         return view;
     }
 }
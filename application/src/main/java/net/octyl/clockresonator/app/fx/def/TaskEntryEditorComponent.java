@@ -22,7 +22,7 @@ import dagger.BindsInstance;
 import dagger.Subcomponent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
-import net.octyl.clockresonator.app.model.TaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntry;
 
 @TaskEntryEditorScope
 @Subcomponent(
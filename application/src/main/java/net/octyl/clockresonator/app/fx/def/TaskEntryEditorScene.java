@@ -19,7 +19,6 @@
 package net.octyl.clockresonator.app.fx.def;
 
 import com.cronutils.model.Cron;
-import com.cronutils.model.time.ExecutionTime;
 import dagger.Module;
 import dagger.Provides;
 import javafx.beans.binding.Bindings;
@@ -51,12 +50,13 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.util.converter.NumberStringConverter;
-import net.octyl.clockresonator.app.model.CronTaskEntry;
-import net.octyl.clockresonator.app.model.IntervalTaskEntry;
-import net.octyl.clockresonator.app.model.OneTimeTaskEntry;
-import net.octyl.clockresonator.app.model.TaskEntry;
-import net.octyl.clockresonator.app.model.TaskEntryManager;
-import net.octyl.clockresonator.app.util.CronConstants;
+import net.octyl.clockresonator.core.model.CronTaskEntry;
+import net.octyl.clockresonator.core.model.IntervalTaskEntry;
+import net.octyl.clockresonator.core.model.OneTimeTaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntryManager;
+import net.octyl.clockresonator.core.util.CronConstants;
+import net.octyl.clockresonator.core.util.CronExecutionCache;
 import org.controlsfx.control.SearchableComboBox;
 import org.kordamp.ikonli.fontawesome5.FontAwesomeSolid;
 import org.kordamp.ikonli.javafx.FontIcon;
@@ -655,7 +655,7 @@ public class TaskEntryEditorScene {
             } else if (selectedItem == cronPane) {
                 Cron cron = CronConstants.PARSER.parse(cronCronField.getText());
                 var timeZone = cronTimeZone.getValue();
-                var lastExecTime = ExecutionTime.forCron(cron).lastExecution(ZonedDateTime.now(timeZone))
+                var lastExecTime = CronExecutionCache.executionTime(cron).lastExecution(ZonedDateTime.now(timeZone))
                     .orElseThrow(() -> new IllegalStateException("Failed to find last occurrence"))
                     .toInstant();
                 newTaskEntry = new CronTaskEntry(
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.headless;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.octyl.clockresonator.core.model.OccurrenceHorizon;
+import net.octyl.clockresonator.core.model.TaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntryManager;
+import net.octyl.clockresonator.core.model.TaskOccurrence;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves commands for the task entries over a Unix domain socket.
+ *
+ * <p>
+ * The protocol is line-based UTF-8. A request is a command, optionally followed by a space and an argument. Every
+ * request gets exactly one response line, in order: {@code OK}, optionally followed by a space and a JSON result, or
+ * {@code ERR} followed by a space and a message. Clients may pipeline requests without waiting for the responses.
+ * </p>
+ *
+ * <ul>
+ *     <li>{@code list}: all entries, as a JSON array</li>
+ *     <li>{@code put <entry JSON>}: add or replace an entry</li>
+ *     <li>{@code complete <id>}: replace an entry with its next entry, which is the result, or {@code null} if there
+ *     is none</li>
+ *     <li>{@code delete <id>}: delete an entry</li>
+ *     <li>{@code due-before <ISO-8601 instant>}: the entries with a next occurrence before the time, and those
+ *     occurrences, earliest first</li>
+ *     <li>{@code due-within <ISO-8601 duration>}: every occurrence from now until the duration from now, repeats
+ *     included, earliest first. The duration can't reach past the {@linkplain OccurrenceHorizon#getEnd() end of the
+ *     horizon}, and recent changes may take a moment to show.</li>
+ * </ul>
+ *
+ * <p>
+ * Requests that have already arrived are handled together. Consecutive changes are applied as one
+ * {@linkplain TaskEntryManager#batch(java.util.function.Consumer) batch}, and the responses are only flushed once no
+ * more requests are waiting.
+ * </p>
+ *
+ * <p>
+ * A change is acknowledged once it's applied, and saved shortly after. The {@link HeadlessDaemon} saves any changes
+ * still waiting when it shuts down.
+ * </p>
+ */
+@Singleton
+public class CommandServer {
+    private static final Logger LOGGER = LogManager.getLogger();
+    // Caps the requests handled before responding, so a client that never stops sending still gets answers
+    private static final int MAX_PIPELINED = 4096;
+    private static final Set<String> CHANGE_COMMANDS = Set.of("put", "complete", "delete");
+
+    // https://github.com/google/dagger/issues/2106
+    // Wrapping the records prevents dagger from observing them and exploding
+    private static final class DaggerHack {
+        private record Request(String command, String argument) {
+            static Request parse(String line) {
+                int space = line.indexOf(' ');
+                return space == -1
+                    ? new Request(line, "")
+                    : new Request(line.substring(0, space), line.substring(space + 1));
+            }
+        }
+    }
+
+    private final TaskEntryManager manager;
+    private final OccurrenceHorizon horizon;
+    private final ObjectReader entryReader;
+    private final ObjectWriter entryWriter;
+    private final ObjectWriter entriesWriter;
+    private final ObjectWriter occurrencesWriter;
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setNameFormat("clock-resonator-ipc-%d")
+        .setDaemon(true)
+        .build());
+
+    @Inject
+    public CommandServer(JsonMapper jsonMapper, TaskEntryManager manager, OccurrenceHorizon horizon) {
+        this.manager = manager;
+        this.horizon = horizon;
+        this.entryReader = jsonMapper.readerFor(TaskEntry.class);
+        this.entryWriter = jsonMapper.writerFor(TaskEntry.class);
+        this.entriesWriter = jsonMapper.writerFor(new TypeReference<Collection<TaskEntry>>() {
+        });
+        this.occurrencesWriter = jsonMapper.writerFor(new TypeReference<List<TaskOccurrence>>() {
+        });
+    }
+
+    /**
+     * Listen on a socket, handling each connection on its own thread. Only returns if listening fails.
+     *
+     * @param socketPath the path to create the socket at, removed again on shutdown
+     * @throws IOException if the socket can't be created, e.g. because another server is using it
+     */
+    public void serve(Path socketPath) throws IOException {
+        var address = UnixDomainSocketAddress.of(socketPath);
+        removeStaleSocket(address);
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socketPath);
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to remove socket " + socketPath, e);
+                }
+            }, "clock-resonator-ipc-cleanup"));
+            LOGGER.info("Listening on {}", socketPath);
+            while (true) {
+                var channel = server.accept();
+                connectionExecutor.execute(() -> handle(channel));
+            }
+        }
+    }
+
+    private static void removeStaleSocket(UnixDomainSocketAddress address) throws IOException {
+        if (!Files.exists(address.getPath())) {
+            return;
+        }
+        try (var ignored = SocketChannel.open(address)) {
+            throw new IOException("Another server is listening on " + address.getPath());
+        } catch (ConnectException e) {
+            // Left behind by a server that didn't shut down cleanly
+            Files.delete(address.getPath());
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel;
+             var reader = new BufferedReader(new InputStreamReader(
+                 Channels.newInputStream(channel), StandardCharsets.UTF_8
+             ));
+             var writer = new BufferedWriter(new OutputStreamWriter(
+                 Channels.newOutputStream(channel), StandardCharsets.UTF_8
+             ))) {
+            var pending = new ArrayList<DaggerHack.Request>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                pending.add(DaggerHack.Request.parse(line));
+                // ready() only sees what's already buffered, so this responds whenever it would otherwise block
+                if (!reader.ready() || pending.size() >= MAX_PIPELINED) {
+                    for (String response : execute(pending)) {
+                        writer.write(response);
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                    pending.clear();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Connection failed", e);
+        }
+    }
+
+    private String[] execute(List<DaggerHack.Request> requests) {
+        var responses = new String[requests.size()];
+        int i = 0;
+        while (i < requests.size()) {
+            if (!CHANGE_COMMANDS.contains(requests.get(i).command())) {
+                responses[i] = query(requests.get(i));
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < requests.size() && CHANGE_COMMANDS.contains(requests.get(i).command())) {
+                i++;
+            }
+            int end = i;
+            manager.batch(tx -> {
+                for (int j = start; j < end; j++) {
+                    responses[j] = change(tx, requests.get(j));
+                }
+            });
+        }
+        return responses;
+    }
+
+    private String change(TaskEntryManager.Transaction tx, DaggerHack.Request request) {
+        try {
+            switch (request.command()) {
+                case "put" -> {
+                    tx.put(entryReader.readValue(request.argument()));
+                    return "OK";
+                }
+                case "complete" -> {
+                    var entry = manager.getEntry(request.argument());
+                    if (entry.isEmpty()) {
+                        return noEntry(request.argument());
+                    }
+                    var next = entry.get().nextTaskEntry(Instant.now());
+                    next.ifPresent(tx::put);
+                    return "OK " + entryWriter.writeValueAsString(next.orElse(null));
+                }
+                case "delete" -> {
+                    if (manager.getEntry(request.argument()).isEmpty()) {
+                        return noEntry(request.argument());
+                    }
+                    tx.delete(request.argument());
+                    return "OK";
+                }
+                default -> throw new IllegalStateException("Not a change: " + request.command());
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            return error(e);
+        }
+    }
+
+    private String query(DaggerHack.Request request) {
+        try {
+            return switch (request.command()) {
+                case "list" -> "OK " + entriesWriter.writeValueAsString(manager.getEntries());
+                case "due-before" -> "OK " + occurrencesWriter.writeValueAsString(
+                    manager.dueBefore(Instant.parse(request.argument()))
+                );
+                case "due-within" -> dueWithin(Duration.parse(request.argument()));
+                default -> "ERR Unknown command '" + request.command() + "'";
+            };
+        } catch (JsonProcessingException | RuntimeException e) {
+            return error(e);
+        }
+    }
+
+    private String dueWithin(Duration within) throws JsonProcessingException {
+        if (Instant.now().plus(within).isAfter(horizon.getEnd())) {
+            return "ERR Occurrences are only known until " + horizon.getEnd();
+        }
+        return "OK " + occurrencesWriter.writeValueAsString(horizon.dueWithin(within));
+    }
+
+    private static String noEntry(String id) {
+        return "ERR No entry with ID '" + id + "'";
+    }
+
+    private static String error(Exception e) {
+        var message = e instanceof JsonProcessingException jsonError ? jsonError.getOriginalMessage() : e.getMessage();
+        // Responses are a single line
+        return "ERR " + String.valueOf(message).lines().findFirst().orElse(e.getClass().getSimpleName());
+    }
+}
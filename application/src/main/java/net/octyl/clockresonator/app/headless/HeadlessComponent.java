@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.headless;
+
+import dagger.Component;
+import dev.dirs.ProjectDirectories;
+import net.octyl.clockresonator.app.inject.ApplicationInfoModule;
+import net.octyl.clockresonator.app.inject.ApplicationVersion;
+import net.octyl.clockresonator.core.inject.JsonModule;
+import net.octyl.clockresonator.core.model.TaskEntryManager;
+import net.octyl.clockresonator.core.notify.DueTaskDispatcher;
+
+import javax.inject.Singleton;
+
+/**
+ * The parts of the application that don't need a UI.
+ */
+@Singleton
+@Component(
+    modules = {
+        ApplicationInfoModule.class,
+        JsonModule.class
+    }
+)
+public interface HeadlessComponent {
+    @ApplicationVersion
+    String version();
+
+    ProjectDirectories projectDirectories();
+
+    TaskEntryManager taskEntryManager();
+
+    DueTaskDispatcher dueTaskDispatcher();
+
+    CommandServer commandServer();
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.headless;
+
+import net.octyl.clockresonator.core.notify.LoggingDueTaskSink;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the task entries without a UI, serving commands on a socket. See {@link CommandServer} for the protocol.
+ *
+ * <p>
+ * The socket is {@code daemon.sock} in the data directory, unless given with {@value #SOCKET_OPTION}.
+ * </p>
+ */
+public final class HeadlessDaemon {
+    private static final Logger LOGGER = LogManager.getLogger();
+    public static final String HEADLESS_FLAG = "--headless";
+    private static final String SOCKET_OPTION = "--socket=";
+    private static final long SHUTDOWN_SAVE_TIMEOUT_SECONDS = 10;
+
+    public static void run(List<String> args) {
+        var component = DaggerHeadlessComponent.create();
+        LOGGER.info("Starting Clock Resonator ({}) headless", component.version());
+        var socket = args.stream()
+            .filter(arg -> arg.startsWith(SOCKET_OPTION))
+            .map(arg -> Path.of(arg.substring(SOCKET_OPTION.length())))
+            .findFirst()
+            .orElseGet(() -> Path.of(component.projectDirectories().dataDir, "daemon.sock"))
+            .toAbsolutePath();
+        var manager = component.taskEntryManager();
+        try {
+            manager.initialize().join();
+        } catch (CompletionException e) {
+            LOGGER.fatal("Failed to load task entries", e.getCause());
+            System.exit(1);
+        }
+        // Changes are acknowledged before they're saved, so save what's left when stopped, e.g. by SIGTERM
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                manager.flush().get(SHUTDOWN_SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                LOGGER.warn("Failed to save task entries before exiting", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "clock-resonator-shutdown-save"));
+        var dueTaskDispatcher = component.dueTaskDispatcher();
+        dueTaskDispatcher.addSink(new LoggingDueTaskSink());
+        dueTaskDispatcher.start();
+        try {
+            Files.createDirectories(socket.getParent());
+            component.commandServer().serve(socket);
+        } catch (IOException e) {
+            LOGGER.fatal("Failed to serve commands", e);
+            System.exit(1);
+        }
+    }
+
+    private HeadlessDaemon() {
+    }
+}
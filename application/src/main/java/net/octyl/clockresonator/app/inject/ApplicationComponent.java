@@ -18,13 +18,16 @@
 
 package net.octyl.clockresonator.app.inject;
 
-import com.google.common.eventbus.EventBus;
 import dagger.Component;
+import net.octyl.clockresonator.app.fx.DueTaskToaster;
 import net.octyl.clockresonator.app.fx.JavaFxModule;
 import net.octyl.clockresonator.app.fx.WindowRestorer;
 import net.octyl.clockresonator.app.fx.def.MainSceneComponent;
-import net.octyl.clockresonator.app.model.TaskEntryManager;
+import net.octyl.clockresonator.app.tick.TickScheduler;
 import net.octyl.clockresonator.app.util.ErrorReporter;
+import net.octyl.clockresonator.core.inject.JsonModule;
+import net.octyl.clockresonator.core.model.TaskEntryManager;
+import net.octyl.clockresonator.core.notify.DueTaskDispatcher;
 
 import javax.inject.Singleton;
 
@@ -32,7 +35,6 @@ import javax.inject.Singleton;
 @Component(
     modules = {
         ApplicationInfoModule.class,
-        EventBusModule.class,
         MainSceneComponent.Module.class,
         JavaFxModule.class,
         JsonModule.class
@@ -44,11 +46,15 @@ public interface ApplicationComponent {
     @ApplicationVersion
     String version();
 
-    EventBus eventBus();
-
     ErrorReporter errorReporter();
 
     TaskEntryManager taskEntryManager();
 
+    TickScheduler tickScheduler();
+
+    DueTaskDispatcher dueTaskDispatcher();
+
+    DueTaskToaster dueTaskToaster();
+
     WindowRestorer windowRestorer();
 }
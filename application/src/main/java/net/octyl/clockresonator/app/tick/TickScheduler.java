@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.tick;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.octyl.clockresonator.app.event.ClockTickEvent;
+import net.octyl.clockresonator.app.fx.JavaFx;
+import net.octyl.clockresonator.app.fx.ProgressEngine;
+import net.octyl.clockresonator.app.util.TimerWheel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Wakes up {@link Target targets} when their requested deadline arrives, rather than ticking everything constantly.
+ *
+ * <p>
+ * Deadlines are kept in a {@link TimerWheel} with {@value #TICK_MILLIS}ms resolution. The wheel is advanced from a
+ * background thread, and only targets that are due are dispatched to the JavaFX thread.
+ * </p>
+ *
+ * <p>
+ * At most one dispatch is queued on the JavaFX thread at a time. If it is busy, e.g. in a modal dialog, targets that
+ * come due meanwhile join the queued dispatch instead of piling up behind it.
+ * </p>
+ */
+@Singleton
+public class TickScheduler {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final long TICK_MILLIS = 100;
+    // How often the tracking counts are logged
+    private static final long STATS_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Something that wants to be woken up at a specific time.
+     */
+    public interface Target {
+        /**
+         * Called on the JavaFX thread when the requested deadline has arrived.
+         *
+         * @param event the tick event
+         * @return the next time to be woken up, if any
+         */
+        Optional<Instant> onClockTick(ClockTickEvent event);
+    }
+
+    /**
+     * A registered target. Closing it stops all further wake-ups.
+     */
+    public final class Registration implements AutoCloseable {
+        private final Target target;
+        private TimerWheel.Timeout<Registration> timeout;
+        private boolean closed;
+
+        private Registration(Target target) {
+            this.target = target;
+        }
+
+        private void schedule(Optional<Instant> deadline) {
+            synchronized (wheel) {
+                if (closed || deadline.isEmpty()) {
+                    return;
+                }
+                if (timeout != null) {
+                    wheel.cancel(timeout);
+                }
+                timeout = wheel.schedule(this, deadline.get().toEpochMilli());
+            }
+        }
+
+        /**
+         * Wake the target at the given time, replacing any previously requested time.
+         *
+         * @param deadline the time to wake the target up
+         */
+        public void wakeAt(Instant deadline) {
+            schedule(Optional.of(deadline));
+        }
+
+        @Override
+        public void close() {
+            synchronized (wheel) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (timeout != null) {
+                    wheel.cancel(timeout);
+                    timeout = null;
+                }
+            }
+        }
+    }
+
+    private final Executor javaFxExecutor;
+    // Only used for logging, the engine registers itself so it can't be injected directly
+    private final Provider<ProgressEngine> progressEngine;
+    private final TimerWheel<Registration> wheel = new TimerWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    // Due targets waiting for the queued dispatch, guarded by the wheel
+    private final List<Registration> dueTargets = new ArrayList<>();
+    private boolean dispatchQueued;
+    private boolean started;
+    private volatile boolean paused;
+
+    @Inject
+    public TickScheduler(@JavaFx Executor javaFxExecutor, Provider<ProgressEngine> progressEngine) {
+        this.javaFxExecutor = javaFxExecutor;
+        this.progressEngine = progressEngine;
+    }
+
+    /**
+     * Register a target.
+     *
+     * @param target the target to wake up
+     * @param firstDeadline the first time to wake the target up, if any
+     * @return the registration, which should be closed when the target is no longer needed
+     */
+    public Registration register(Target target, Optional<Instant> firstDeadline) {
+        var registration = new Registration(target);
+        registration.schedule(firstDeadline);
+        return registration;
+    }
+
+    /**
+     * {@return the number of targets waiting to be woken up}
+     */
+    public int pendingCount() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    /**
+     * Pause or resume waking targets. While paused, due targets wait until resumed, e.g. when nothing is visible.
+     *
+     * @param paused {@code true} to pause
+     */
+    public void setPaused(boolean paused) {
+        if (this.paused != paused) {
+            LOGGER.debug(() -> paused ? "Pausing ticks" : "Resuming ticks");
+            this.paused = paused;
+        }
+    }
+
+    public synchronized void start() {
+        checkState(!started, "Already started");
+        started = true;
+        var executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("clock-resonator-tick-%d")
+            .setDaemon(true)
+            .build());
+        executor.scheduleAtFixedRate(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        executor.scheduleAtFixedRate(this::logStats, STATS_INTERVAL_MILLIS, STATS_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS);
+    }
+
+    private void logStats() {
+        if (!LOGGER.isDebugEnabled()) {
+            return;
+        }
+        int pending = pendingCount();
+        // Every progress value shares one registration, so count those instead. They belong to the JavaFX thread.
+        javaFxExecutor.execute(() -> LOGGER.debug(
+            progressEngine.get().trackedCount() + " tracked progress values, " + pending + " pending tick targets"
+        ));
+    }
+
+    private void tick() {
+        if (paused) {
+            return;
+        }
+        synchronized (wheel) {
+            wheel.advance(System.currentTimeMillis(), registration -> {
+                registration.timeout = null;
+                dueTargets.add(registration);
+            });
+            if (dueTargets.isEmpty() || dispatchQueued) {
+                return;
+            }
+            dispatchQueued = true;
+        }
+        javaFxExecutor.execute(this::dispatch);
+    }
+
+    private void dispatch() {
+        List<Registration> due;
+        synchronized (wheel) {
+            due = List.copyOf(dueTargets);
+            dueTargets.clear();
+            dispatchQueued = false;
+        }
+        var event = new ClockTickEvent(Instant.now());
+        LOGGER.debug(() -> "Waking " + due.size() + " targets");
+        for (Registration registration : due) {
+            synchronized (wheel) {
+                if (registration.closed) {
+                    continue;
+                }
+            }
+            registration.schedule(registration.target.onClockTick(event));
+        }
+    }
+}
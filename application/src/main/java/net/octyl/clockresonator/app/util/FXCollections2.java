@@ -20,11 +20,22 @@ package net.octyl.clockresonator.app.util;
 
 import javafx.collections.ObservableList;
 
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class FXCollections2 {
     public static <T, R> ObservableList<R> map(ObservableList<T> src, Function<? super T, ? extends R> mapper) {
-        return new MappedList<>(src, mapper);
+        return map(src, mapper, e -> {
+        });
+    }
+
+    /**
+     * Map each element of {@code src} once, calling {@code disposer} on the mapped value when it leaves the list.
+     */
+    public static <T, R> ObservableList<R> map(ObservableList<T> src,
+                                               Function<? super T, ? extends R> mapper,
+                                               Consumer<? super R> disposer) {
+        return new MappedList<>(src, mapper, disposer);
     }
 
     private FXCollections2() {
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.util;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.TransformationList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * A sorted view of a list, which moves only the elements whose sort keys have changed.
+ *
+ * <p>
+ * Unlike {@link javafx.collections.transformation.SortedList}, the sort keys of elements are watched through an
+ * extractor. Invalidated elements are collected and re-positioned together on the {@code reorderExecutor}, by taking
+ * them out and merging them back into the rest of the list, which is still sorted. The result is reported as a single
+ * permutation covering only the moved range.
+ * </p>
+ *
+ * <p>
+ * Elements are compared by identity when tracking them, so the source should not contain the same element twice.
+ * When the comparator is {@code null}, the source order is kept. {@link #getSourceIndex} and {@link #getViewIndex}
+ * look positions up in identity maps, which are rebuilt in one pass on the first lookup after a change.
+ * </p>
+ */
+public class IncrementalSortedList<E> extends TransformationList<E, E> {
+    private final Function<? super E, Observable[]> extractor;
+    private final Executor reorderExecutor;
+    private final ObjectProperty<Comparator<? super E>> comparator = new SimpleObjectProperty<>(this, "comparator") {
+        @Override
+        protected void invalidated() {
+            resort();
+        }
+    };
+    private final List<E> sorted;
+    private final Map<E, InvalidationListener> keyListeners = new IdentityHashMap<>();
+    private final Set<E> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean reorderScheduled;
+    // Positions of each element, built when first needed after a change
+    private @Nullable Map<E, Integer> sourceIndexes;
+    private @Nullable Map<E, Integer> viewIndexes;
+
+    /**
+     * Create a new sorted view.
+     *
+     * @param source the source list
+     * @param extractor the observables that the sort keys of an element depend on
+     * @param reorderExecutor where to re-position invalidated elements, usually later on the same thread
+     */
+    public IncrementalSortedList(ObservableList<? extends E> source,
+                                 Function<? super E, Observable[]> extractor,
+                                 Executor reorderExecutor) {
+        super(source);
+        this.extractor = extractor;
+        this.reorderExecutor = reorderExecutor;
+        this.sorted = new ArrayList<>(source);
+        for (E e : sorted) {
+            watch(e);
+        }
+    }
+
+    public ObjectProperty<Comparator<? super E>> comparatorProperty() {
+        return comparator;
+    }
+
+    public Comparator<? super E> getComparator() {
+        return comparator.get();
+    }
+
+    public void setComparator(Comparator<? super E> comparator) {
+        this.comparator.set(comparator);
+    }
+
+    @Override
+    public int getSourceIndex(int index) {
+        if (sourceIndexes == null) {
+            sourceIndexes = indexesOf(getSource());
+        }
+        return sourceIndexes.getOrDefault(sorted.get(index), -1);
+    }
+
+    @Override
+    public int getViewIndex(int index) {
+        if (viewIndexes == null) {
+            viewIndexes = indexesOf(sorted);
+        }
+        return viewIndexes.getOrDefault(getSource().get(index), -1);
+    }
+
+    private static <E> Map<E, Integer> indexesOf(List<? extends E> list) {
+        var indexes = new IdentityHashMap<E, Integer>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            indexes.put(list.get(i), i);
+        }
+        return indexes;
+    }
+
+    @Override
+    public E get(int index) {
+        return sorted.get(index);
+    }
+
+    @Override
+    public int size() {
+        return sorted.size();
+    }
+
+    private void watch(E e) {
+        InvalidationListener listener = obs -> markDirty(e);
+        keyListeners.put(e, listener);
+        for (Observable observable : extractor.apply(e)) {
+            observable.addListener(listener);
+        }
+    }
+
+    private void unwatch(E e) {
+        var listener = keyListeners.remove(e);
+        if (listener != null) {
+            for (Observable observable : extractor.apply(e)) {
+                observable.removeListener(listener);
+            }
+        }
+        dirty.remove(e);
+    }
+
+    private void markDirty(E e) {
+        if (getComparator() == null) {
+            return;
+        }
+        dirty.add(e);
+        if (!reorderScheduled) {
+            reorderScheduled = true;
+            reorderExecutor.execute(this::reorder);
+        }
+    }
+
+    /**
+     * Re-position the elements whose sort keys have changed since the last reorder.
+     */
+    public void reorder() {
+        reorderScheduled = false;
+        var comparator = getComparator();
+        if (dirty.isEmpty() || comparator == null) {
+            dirty.clear();
+            return;
+        }
+        int size = sorted.size();
+        var clean = new ArrayList<Integer>(size);
+        var moved = new ArrayList<Integer>(dirty.size());
+        for (int i = 0; i < size; i++) {
+            (dirty.contains(sorted.get(i)) ? moved : clean).add(i);
+        }
+        dirty.clear();
+        moved.sort(Comparator.comparing(sorted::get, comparator));
+
+        // perm[old index] = new index
+        int[] perm = new int[size];
+        var result = new ArrayList<E>(size);
+        int ci = 0;
+        int mi = 0;
+        while (ci < clean.size() || mi < moved.size()) {
+            int from;
+            if (mi < moved.size() && (ci == clean.size()
+                || comparator.compare(sorted.get(moved.get(mi)), sorted.get(clean.get(ci))) < 0)) {
+                from = moved.get(mi++);
+            } else {
+                from = clean.get(ci++);
+            }
+            perm[from] = result.size();
+            result.add(sorted.get(from));
+        }
+
+        int lo = 0;
+        while (lo < size && perm[lo] == lo) {
+            lo++;
+        }
+        if (lo == size) {
+            return;
+        }
+        int hi = size;
+        while (perm[hi - 1] == hi - 1) {
+            hi--;
+        }
+        for (int i = lo; i < hi; i++) {
+            sorted.set(i, result.get(i));
+        }
+        viewIndexes = null;
+        beginChange();
+        nextPermutation(lo, hi, Arrays.copyOfRange(perm, lo, hi));
+        endChange();
+    }
+
+    private void resort() {
+        var comparator = getComparator();
+        var result = new ArrayList<E>(comparator == null ? getSource() : sorted);
+        if (comparator != null) {
+            result.sort(comparator);
+        }
+        dirty.clear();
+        var oldIndexes = new IdentityHashMap<E, Integer>(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            oldIndexes.put(sorted.get(i), i);
+        }
+        int[] perm = new int[sorted.size()];
+        for (int i = 0; i < result.size(); i++) {
+            perm[oldIndexes.get(result.get(i))] = i;
+        }
+        Collections.copy(sorted, result);
+        viewIndexes = null;
+        if (!sorted.isEmpty()) {
+            beginChange();
+            nextPermutation(0, sorted.size(), perm);
+            endChange();
+        }
+    }
+
+    @Override
+    protected void sourceChanged(ListChangeListener.Change<? extends E> c) {
+        sourceIndexes = null;
+        viewIndexes = null;
+        if (getComparator() == null) {
+            forwardUnsorted(c);
+            return;
+        }
+        if (!dirty.isEmpty()) {
+            // Merging additions in requires the rest to be sorted
+            reorder();
+        }
+        Set<E> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        var added = new ArrayList<E>();
+        while (c.next()) {
+            if (c.wasPermutated()) {
+                continue;
+            }
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    markDirty(getSource().get(i));
+                }
+                continue;
+            }
+            removed.addAll(c.getRemoved());
+            added.addAll(c.getAddedSubList());
+        }
+        // Elements removed and added back in the same change stay where they are
+        added.removeIf(removed::remove);
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+
+        viewIndexes = null;
+        beginChange();
+        try {
+            removeAll(removed);
+            mergeAll(added);
+        } finally {
+            endChange();
+        }
+    }
+
+    private void removeAll(Set<E> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        // Report from the end, so earlier indexes are still valid
+        int i = sorted.size() - 1;
+        while (i >= 0) {
+            if (!removed.contains(sorted.get(i))) {
+                i--;
+                continue;
+            }
+            int end = i + 1;
+            while (i >= 0 && removed.contains(sorted.get(i))) {
+                i--;
+            }
+            var run = sorted.subList(i + 1, end);
+            nextRemove(i + 1, List.copyOf(run));
+            run.forEach(this::unwatch);
+            run.clear();
+        }
+    }
+
+    private void mergeAll(List<E> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        added.sort(getComparator());
+        var result = new ArrayList<E>(sorted.size() + added.size());
+        // Positions of the added elements in the result, ascending
+        int[] positions = new int[added.size()];
+        int si = 0;
+        int ai = 0;
+        while (si < sorted.size() || ai < added.size()) {
+            if (ai < added.size() && (si == sorted.size()
+                || getComparator().compare(added.get(ai), sorted.get(si)) < 0)) {
+                positions[ai] = result.size();
+                result.add(added.get(ai++));
+            } else {
+                result.add(sorted.get(si++));
+            }
+        }
+        sorted.clear();
+        sorted.addAll(result);
+        for (int i = 0; i < positions.length; ) {
+            int from = positions[i];
+            int to = from + 1;
+            i++;
+            while (i < positions.length && positions[i] == to) {
+                to++;
+                i++;
+            }
+            nextAdd(from, to);
+        }
+        added.forEach(this::watch);
+    }
+
+    private void forwardUnsorted(ListChangeListener.Change<? extends E> c) {
+        beginChange();
+        try {
+            while (c.next()) {
+                if (c.wasPermutated()) {
+                    var old = new ArrayList<>(sorted.subList(c.getFrom(), c.getTo()));
+                    int[] perm = new int[c.getTo() - c.getFrom()];
+                    for (int i = c.getFrom(); i < c.getTo(); i++) {
+                        perm[i - c.getFrom()] = c.getPermutation(i);
+                        sorted.set(c.getPermutation(i), old.get(i - c.getFrom()));
+                    }
+                    nextPermutation(c.getFrom(), c.getTo(), perm);
+                } else if (c.wasUpdated()) {
+                    for (int i = c.getFrom(); i < c.getTo(); i++) {
+                        nextUpdate(i);
+                    }
+                } else {
+                    var range = sorted.subList(c.getFrom(), c.getFrom() + c.getRemovedSize());
+                    var removed = List.copyOf(range);
+                    range.clear();
+                    removed.forEach(this::unwatch);
+                    sorted.addAll(c.getFrom(), c.getAddedSubList());
+                    c.getAddedSubList().forEach(this::watch);
+                    if (removed.isEmpty()) {
+                        nextAdd(c.getFrom(), c.getTo());
+                    } else if (c.getFrom() == c.getTo()) {
+                        nextRemove(c.getFrom(), removed);
+                    } else {
+                        nextReplace(c.getFrom(), c.getTo(), removed);
+                    }
+                }
+            }
+        } finally {
+            endChange();
+        }
+    }
+}
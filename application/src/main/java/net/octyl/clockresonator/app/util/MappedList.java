@@ -23,16 +23,36 @@ import javafx.collections.ObservableList;
 import javafx.collections.transformation.TransformationList;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
+/**
+ * A list that maps each source element exactly once, keeping the result until the source element is removed.
+ *
+ * <p>
+ * Removed mappings are handed to the disposer after listeners have seen the change, so expensive mappings
+ * (e.g. ones that subscribe to something) can release their resources. An element that is removed and added back
+ * in the same change keeps its mapping.
+ * </p>
+ */
 class MappedList<E, F> extends TransformationList<E, F> {
 
     private final Function<? super F, ? extends E> mapper;
+    private final Consumer<? super E> disposer;
+    private final List<E> mapped;
 
-    public MappedList(ObservableList<? extends F> source, Function<? super F, ? extends E> mapper) {
+    public MappedList(ObservableList<? extends F> source,
+                      Function<? super F, ? extends E> mapper,
+                      Consumer<? super E> disposer) {
         super(source);
         this.mapper = mapper;
+        this.disposer = disposer;
+        this.mapped = new ArrayList<>(source.size());
+        for (F f : source) {
+            mapped.add(mapper.apply(f));
+        }
     }
 
     @Override
@@ -47,80 +67,143 @@ class MappedList<E, F> extends TransformationList<E, F> {
 
     @Override
     public E get(int index) {
-        return mapper.apply(getSource().get(index));
+        return mapped.get(index);
     }
 
     @Override
     public int size() {
-        return getSource().size();
+        return mapped.size();
     }
 
     @Override
     protected void sourceChanged(ListChangeListener.Change<? extends F> c) {
-        fireChange(new ListChangeListener.Change<>(this) {
-            @Override
-            public boolean wasAdded() {
-                return c.wasAdded();
+        int structural = 0;
+        while (c.next()) {
+            if (c.wasPermutated()) {
+                // Permutations are always reported alone
+                beginChange();
+                permute(c);
+                endChange();
+                return;
             }
-
-            @Override
-            public boolean wasRemoved() {
-                return c.wasRemoved();
-            }
-
-            @Override
-            public boolean wasReplaced() {
-                return c.wasReplaced();
+            if (!c.wasUpdated()) {
+                structural++;
             }
-
-            @Override
-            public boolean wasUpdated() {
-                return c.wasUpdated();
+        }
+        c.reset();
+        var disposed = new ArrayList<E>();
+        beginChange();
+        if (structural > 1) {
+            // Rebuilt in one pass, rather than shifting the rest of the list for every sub-change
+            applyAll(c, disposed);
+        } else {
+            while (c.next()) {
+                if (c.wasUpdated()) {
+                    for (int i = c.getFrom(); i < c.getTo(); i++) {
+                        nextUpdate(i);
+                    }
+                } else {
+                    apply(c, disposed);
+                }
             }
+        }
+        endChange();
+        disposed.forEach(disposer);
+    }
 
-            @Override
-            public boolean wasPermutated() {
-                return c.wasPermutated();
-            }
+    private void apply(ListChangeListener.Change<? extends F> c, List<E> disposed) {
+        var range = mapped.subList(c.getFrom(), c.getFrom() + c.getRemovedSize());
+        var removed = new ArrayList<E>(range);
+        range.clear();
+        // Keep the mapping of anything that was removed and added back in the same change
+        var reusable = new IdentityHashMap<F, E>();
+        var removedSource = c.getRemoved();
+        for (int i = 0; i < removed.size(); i++) {
+            reusable.put(removedSource.get(i), removed.get(i));
+        }
+        var added = new ArrayList<E>(c.getAddedSize());
+        for (F f : c.getAddedSubList()) {
+            var reused = reusable.remove(f);
+            added.add(reused != null ? reused : mapper.apply(f));
+        }
+        disposed.addAll(reusable.values());
+        mapped.addAll(c.getFrom(), added);
+        report(c.getFrom(), c.getTo(), removed);
+    }
 
-            @Override
-            public int getPermutation(int i) {
-                return c.getPermutation(i);
+    private void applyAll(ListChangeListener.Change<? extends F> c, List<E> disposed) {
+        // Sub-changes are in order, with indexes into the new list. First find the removed mappings.
+        var removedRuns = new ArrayList<List<E>>();
+        var reusable = new IdentityHashMap<F, E>();
+        int old = 0;
+        int copied = 0;
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                continue;
             }
-
-            @Override
-            protected int[] getPermutation() {
-                throw new UnsupportedOperationException();
+            old += c.getFrom() - copied;
+            var removed = List.copyOf(mapped.subList(old, old + c.getRemovedSize()));
+            var removedSource = c.getRemoved();
+            for (int i = 0; i < removed.size(); i++) {
+                reusable.put(removedSource.get(i), removed.get(i));
             }
-
-            @Override
-            public List<E> getRemoved() {
-                ArrayList<E> res = new ArrayList<>(c.getRemovedSize());
-                for (F e : c.getRemoved()) {
-                    res.add(mapper.apply(e));
-                }
-                return res;
+            removedRuns.add(removed);
+            old += c.getRemovedSize();
+            copied = c.getTo();
+        }
+        c.reset();
+        // Then build the new list, reusing the mappings of anything that was removed and added back
+        var result = new ArrayList<E>(getSource().size());
+        old = 0;
+        int run = 0;
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                continue;
             }
-
-            @Override
-            public int getFrom() {
-                return c.getFrom();
+            int unchanged = c.getFrom() - result.size();
+            result.addAll(mapped.subList(old, old + unchanged));
+            old += unchanged + c.getRemovedSize();
+            for (F f : c.getAddedSubList()) {
+                var reused = reusable.remove(f);
+                result.add(reused != null ? reused : mapper.apply(f));
             }
-
-            @Override
-            public int getTo() {
-                return c.getTo();
+        }
+        result.addAll(mapped.subList(old, mapped.size()));
+        disposed.addAll(reusable.values());
+        mapped.clear();
+        mapped.addAll(result);
+        c.reset();
+        while (c.next()) {
+            if (c.wasUpdated()) {
+                for (int i = c.getFrom(); i < c.getTo(); i++) {
+                    nextUpdate(i);
+                }
+            } else {
+                report(c.getFrom(), c.getTo(), removedRuns.get(run++));
             }
+        }
+    }
 
-            @Override
-            public boolean next() {
-                return c.next();
-            }
+    private void report(int from, int to, List<E> removed) {
+        if (removed.isEmpty()) {
+            nextAdd(from, to);
+        } else if (from == to) {
+            nextRemove(from, removed);
+        } else {
+            nextReplace(from, to, removed);
+        }
+    }
 
-            @Override
-            public void reset() {
-                c.reset();
-            }
-        });
+    private void permute(ListChangeListener.Change<? extends F> c) {
+        int from = c.getFrom();
+        int to = c.getTo();
+        var old = new ArrayList<>(mapped.subList(from, to));
+        int[] perm = new int[to - from];
+        for (int i = from; i < to; i++) {
+            int target = c.getPermutation(i);
+            mapped.set(target, old.get(i - from));
+            perm[i - from] = target;
+        }
+        nextPermutation(from, to, perm);
     }
 }
@@ -22,42 +22,61 @@ import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableListBase;
 import javafx.collections.ObservableMap;
 import javafx.collections.WeakMapChangeListener;
+import net.octyl.clockresonator.core.util.OrderStatisticTree;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.RandomAccess;
 
 /**
  * An observable list of the values in a map, ordered by some {@link Comparator}.
  */
 public class ObservableValueList<V> extends ObservableListBase<V> implements RandomAccess {
+    private final Comparator<V> comparator;
     // Must hold a strong reference to this here
     @SuppressWarnings("unused")
     private final MapChangeListener<Object, V> listener;
-    // This is kinda expensive for midpoint add/remove, but a LinkedList would make searching expensive
-    // Theoretically some sort of "sparse array list" would be nice here (skip list?)
-    private final List<V> delegate = new ArrayList<>();
+    // O(log n) for add, remove, and get, so bulk loads don't go quadratic
+    private final OrderStatisticTree<V> delegate;
+    private int batchDepth;
+    // Net number of times each value was added in the current batch, by identity
+    private final Map<V, Integer> batchChanges = new IdentityHashMap<>();
 
     public ObservableValueList(ObservableMap<?, V> owner, Comparator<V> comparator) {
+        this.comparator = comparator;
+        this.delegate = new OrderStatisticTree<>(comparator);
         owner.addListener(new WeakMapChangeListener<>(listener = change -> {
+            if (batchDepth > 0) {
+                // Positioned all at once when the batch ends
+                if (change.wasRemoved()) {
+                    // Count the instance the list holds, an equal put may not have replaced it
+                    int index = delegate.indexOf(change.getValueRemoved());
+                    if (index >= 0) {
+                        batchChanges.merge(delegate.get(index), -1, Integer::sum);
+                        delegate.remove(change.getValueRemoved());
+                    }
+                }
+                if (change.wasAdded()) {
+                    delegate.add(change.getValueAdded());
+                    batchChanges.merge(change.getValueAdded(), 1, Integer::sum);
+                }
+                return;
+            }
             beginChange();
             try {
                 if (change.wasRemoved()) {
                     var value = change.getValueRemoved();
-                    int index = Collections.binarySearch(delegate, value, comparator);
+                    int index = delegate.remove(value);
                     if (index >= 0) {
-                        delegate.remove(index);
                         nextRemove(index, value);
                     }
                 }
                 if (change.wasAdded()) {
-                    var value = change.getValueAdded();
-                    int index = Collections.binarySearch(delegate, value, comparator);
-                    var insertionPoint = index >= 0 ? index : -(index + 1);
-                    delegate.add(insertionPoint, value);
-                    nextAdd(insertionPoint, insertionPoint + 1);
+                    int index = delegate.add(change.getValueAdded());
+                    nextAdd(index, index + 1);
                 }
             } finally {
                 endChange();
@@ -65,6 +84,97 @@ public class ObservableValueList<V> extends ObservableListBase<V> implements Ran
         }));
     }
 
+    /**
+     * Run an action that changes the owning map, reporting all of its changes as a single list change.
+     *
+     * <p>
+     * A batch of {@code k} changes costs {@code O(k log n)}, as only the positions it touched are reported.
+     * </p>
+     *
+     * @param action the action to run
+     */
+    public void batch(Runnable action) {
+        batchDepth++;
+        try {
+            action.run();
+        } finally {
+            if (--batchDepth == 0) {
+                fireBatch();
+            }
+        }
+    }
+
+    private void fireBatch() {
+        var removed = new ArrayList<V>();
+        var added = new ArrayList<V>();
+        batchChanges.forEach((value, count) -> {
+            if (count < 0) {
+                removed.add(value);
+            } else if (count > 0) {
+                added.add(value);
+            }
+        });
+        batchChanges.clear();
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+        removed.sort(comparator);
+        added.sort(comparator);
+        beginChange();
+        try {
+            // Walk both in order, so each position is in terms of the list with the earlier changes applied:
+            // everything before a removed value is final, so it sits right after the values less than it
+            var run = new Run<V>();
+            int r = 0;
+            int a = 0;
+            while (r < removed.size() || a < added.size()) {
+                if (a == added.size()
+                    || (r < removed.size() && comparator.compare(removed.get(r), added.get(a)) <= 0)) {
+                    var value = removed.get(r++);
+                    run = extend(run, delegate.countLessThan(value));
+                    run.removed.add(value);
+                } else {
+                    run = extend(run, delegate.indexOf(added.get(a++)));
+                    run.addedSize++;
+                }
+            }
+            report(run);
+        } finally {
+            endChange();
+        }
+    }
+
+    // Consecutive changes, reported as one sub-change
+    private static final class Run<V> {
+        private int from = -1;
+        private final List<V> removed = new ArrayList<>();
+        private int addedSize;
+    }
+
+    private Run<V> extend(Run<V> run, int index) {
+        if (run.from + run.addedSize == index) {
+            return run;
+        }
+        report(run);
+        var next = new Run<V>();
+        next.from = index;
+        return next;
+    }
+
+    private void report(Run<V> run) {
+        if (run.from < 0) {
+            return;
+        }
+        int to = run.from + run.addedSize;
+        if (run.removed.isEmpty()) {
+            nextAdd(run.from, to);
+        } else if (run.addedSize == 0) {
+            nextRemove(run.from, run.removed);
+        } else {
+            nextReplace(run.from, to, run.removed);
+        }
+    }
+
     @Override
     public V get(int index) {
         return delegate.get(index);
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.util;
+
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A hierarchical timer wheel, keyed on epoch milliseconds.
+ *
+ * <p>
+ * Scheduling and cancelling are {@code O(1)}, and advancing the wheel costs {@code O(1)} per tick plus the cost of
+ * the expired timeouts. Timeouts far in the future live in the coarser wheels, and are cascaded down into the finer
+ * wheels as their deadline approaches.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe, callers must synchronize externally.
+ * </p>
+ *
+ * @param <T> the type of value held by the timeouts
+ */
+public final class TimerWheel<T> {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    // 64^6 ticks covers a couple of centuries at 100ms ticks, anything further is re-cascaded from the top
+    private static final int LEVELS = 6;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    /**
+     * A scheduled value. Also acts as the sentinel node of each bucket.
+     */
+    public static final class Timeout<T> {
+        private final T value;
+        private long deadlineTick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private boolean sentinel;
+
+        private Timeout(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T value() {
+            return value;
+        }
+
+        /**
+         * {@return {@code true} if this timeout is still waiting to expire}
+         */
+        public boolean isPending() {
+            return next != null;
+        }
+    }
+
+    private final long tickMillis;
+    private final Timeout<T>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMillis, long startMillis) {
+        checkArgument(tickMillis > 0, "Tick must be positive");
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.wheels = new Timeout[LEVELS][WHEEL_SIZE];
+        for (var wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                var sentinel = new Timeout<T>(null, 0);
+                sentinel.sentinel = true;
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                wheel[i] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * {@return the number of pending timeouts}
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedule a value to expire at the given deadline. Deadlines that have already passed expire on the next tick.
+     *
+     * @param value the value to hand back on expiry
+     * @param deadlineMillis the deadline, in epoch milliseconds
+     * @return the timeout, which can be passed to {@link #cancel(Timeout)}
+     */
+    public Timeout<T> schedule(T value, long deadlineMillis) {
+        // Round up, we should never fire early
+        var timeout = new Timeout<>(value, Math.floorDiv(deadlineMillis, tickMillis)
+            + (Math.floorMod(deadlineMillis, tickMillis) == 0 ? 0 : 1));
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancel a timeout. Does nothing if it already expired or was cancelled.
+     *
+     * @param timeout the timeout to cancel
+     */
+    public void cancel(Timeout<T> timeout) {
+        checkArgument(!timeout.sentinel, "Cannot cancel a sentinel");
+        if (!timeout.isPending()) {
+            return;
+        }
+        unlink(timeout);
+        size--;
+    }
+
+    /**
+     * Advance the wheel to the given time, expiring every timeout whose deadline is at or before it.
+     *
+     * @param nowMillis the current time, in epoch milliseconds
+     * @param expired the consumer of expired values, which must not modify the wheel
+     */
+    public void advance(long nowMillis, Consumer<? super T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                // Nothing to cascade or expire, so we can jump straight there
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            cascade();
+            var bucket = wheels[0][(int) (currentTick & WHEEL_MASK)];
+            for (var timeout = bucket.next; timeout != bucket; ) {
+                var next = timeout.next;
+                unlink(timeout);
+                if (timeout.deadlineTick <= currentTick) {
+                    size--;
+                    expired.accept(timeout.value);
+                } else {
+                    // Was clamped to the top wheel, it goes back around
+                    insert(timeout);
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    private void cascade() {
+        int highest = 0;
+        while (highest + 1 < LEVELS && (currentTick & ((1L << (WHEEL_BITS * (highest + 1))) - 1)) == 0) {
+            highest++;
+        }
+        for (int level = highest; level > 0; level--) {
+            var bucket = wheels[level][(int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK)];
+            for (var timeout = bucket.next; timeout != bucket; ) {
+                var next = timeout.next;
+                unlink(timeout);
+                insert(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    private void insert(Timeout<T> timeout) {
+        checkState(!timeout.isPending(), "Timeout is already scheduled");
+        long delta = Math.min(Math.max(timeout.deadlineTick - currentTick, 1), MAX_DELTA);
+        long placementTick = currentTick + delta;
+        int level = 0;
+        while (delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        var bucket = wheels[level][(int) ((placementTick >>> (WHEEL_BITS * level)) & WHEEL_MASK)];
+        timeout.prev = bucket.prev;
+        timeout.next = bucket;
+        bucket.prev.next = timeout;
+        bucket.prev = timeout;
+    }
+
+    private static <T> void unlink(Timeout<T> timeout) {
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.fx;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import net.octyl.clockresonator.app.tick.TickScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+class ProgressEngineTest {
+    private static final int SLOTS = 10_000;
+    private static final int TICKS = 200;
+    // Every slot's progress visibly changes once per step
+    private static final long STEP_MILLIS = 1000;
+    private static final long DURATION_MILLIS = STEP_MILLIS * 10_000;
+
+    // Keeps the control allocations from being optimized away
+    private static Object sink;
+
+    private ProgressEngine engine;
+
+    @Test
+    void updatesWithoutAllocating() throws IOException {
+        engine = new ProgressEngine(new TickScheduler(Runnable::run, () -> engine), () -> true);
+        long start = System.currentTimeMillis();
+        var properties = new DoubleProperty[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            properties[i] = new SimpleDoubleProperty();
+            engine.track(Instant.ofEpochMilli(start), Instant.ofEpochMilli(start + DURATION_MILLIS), properties[i],
+                () -> true);
+        }
+        // Warm up, so the recording only sees the steady state
+        long now = start;
+        for (int i = 0; i < TICKS; i++) {
+            now += STEP_MILLIS;
+            engine.updateDue(now);
+        }
+
+        List<RecordedEvent> events;
+        try (var recording = new Recording()) {
+            recording.enable("jdk.ObjectAllocationInNewTLAB").withStackTrace();
+            recording.enable("jdk.ObjectAllocationOutsideTLAB").withStackTrace();
+            recording.start();
+            for (int i = 0; i < TICKS; i++) {
+                now += STEP_MILLIS;
+                engine.updateDue(now);
+            }
+            allocateControl();
+            recording.stop();
+            var file = Files.createTempFile("progress-engine", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        assertThat(properties[0].get()).isWithin(1e-9).of(TICKS * 2 / 10_000.0);
+        // Make sure the recording can see this thread's allocations at all
+        assertWithMessage("control allocations").that(countAllocationsIn(events, "allocateControl")).isGreaterThan(0);
+        assertWithMessage("tick allocations").that(countAllocationsIn(events, "updateDue")).isEqualTo(0);
+    }
+
+    private static void allocateControl() {
+        // Many times the size of a TLAB, so it certainly shows up
+        for (int i = 0; i < 64 * 1024; i++) {
+            sink = new byte[1024];
+        }
+    }
+
+    private static long countAllocationsIn(List<RecordedEvent> events, String methodName) {
+        long threadId = Thread.currentThread().getId();
+        return events.stream()
+            .filter(event -> event.getThread("eventThread").getJavaThreadId() == threadId)
+            .filter(event -> event.getStackTrace() != null && event.getStackTrace().getFrames().stream()
+                .map(RecordedFrame::getMethod)
+                .anyMatch(method -> method.getName().equals(methodName)))
+            .count();
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.util;
+
+import javafx.beans.Observable;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class IncrementalSortedListTest {
+    // Compared by identity, like the elements of the task list
+    private static final class Item {
+        private final String name;
+        private final IntegerProperty key;
+
+        Item(String name, int key) {
+            this.name = name;
+            this.key = new SimpleIntegerProperty(key);
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + key.get();
+        }
+    }
+
+    // A reported sub-change, copied as the list's change objects aren't valid after the listener returns
+    private record SubChange(int from, int to, boolean permutated, List<Item> removed) {
+    }
+
+    private static final Comparator<Item> BY_KEY = Comparator.comparingInt(item -> item.key.get());
+
+    private final ObservableList<Item> source = FXCollections.observableArrayList();
+    private final Queue<Runnable> reorders = new ArrayDeque<>();
+    private final IncrementalSortedList<Item> list = new IncrementalSortedList<>(
+        source, item -> new Observable[] {item.key}, reorders::add
+    );
+    // Kept in step with the list by applying each reported change
+    private final List<Item> mirror = new ArrayList<>();
+    private final List<SubChange> subChanges = new ArrayList<>();
+    private int changeCount;
+    // Listener failures are only logged by the list, so they're kept to fail the test with
+    private @Nullable Throwable listenerFailure;
+
+    IncrementalSortedListTest() {
+        list.setComparator(BY_KEY);
+        list.addListener((ListChangeListener<Item>) change -> {
+            changeCount++;
+            try {
+                while (change.next()) {
+                    subChanges.add(new SubChange(
+                        change.getFrom(), change.getTo(), change.wasPermutated(), List.copyOf(change.getRemoved())
+                    ));
+                    if (change.wasPermutated()) {
+                        var old = new ArrayList<>(mirror.subList(change.getFrom(), change.getTo()));
+                        for (int i = change.getFrom(); i < change.getTo(); i++) {
+                            mirror.set(change.getPermutation(i), old.get(i - change.getFrom()));
+                        }
+                        continue;
+                    }
+                    var removedRange = mirror.subList(change.getFrom(), change.getFrom() + change.getRemovedSize());
+                    assertThat(removedRange).containsExactlyElementsIn(change.getRemoved()).inOrder();
+                    removedRange.clear();
+                    mirror.addAll(change.getFrom(), change.getAddedSubList());
+                }
+            } catch (Throwable t) {
+                if (listenerFailure == null) {
+                    listenerFailure = t;
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    void rethrowListenerFailure() throws Throwable {
+        if (listenerFailure != null) {
+            throw listenerFailure;
+        }
+    }
+
+    private List<Item> items(int count) {
+        var items = new ArrayList<Item>();
+        for (int i = 0; i < count; i++) {
+            items.add(new Item("item-" + i, i * 10));
+        }
+        return items;
+    }
+
+    private void runReorders() {
+        while (!reorders.isEmpty()) {
+            reorders.remove().run();
+        }
+    }
+
+    private void assertInStep(@Nullable Comparator<Item> comparator) {
+        if (comparator == null) {
+            assertThat(list).containsExactlyElementsIn(source).inOrder();
+        } else {
+            // Equal elements may be in any order
+            assertThat(list).containsExactlyElementsIn(source);
+            assertThat(list).isInOrder(comparator);
+        }
+        assertThat(mirror).containsExactlyElementsIn(list).inOrder();
+        for (int i = 0; i < list.size(); i++) {
+            assertThat(source.get(list.getSourceIndex(i))).isSameInstanceAs(list.get(i));
+            assertThat(list.get(list.getViewIndex(i))).isSameInstanceAs(source.get(i));
+        }
+    }
+
+    @Test
+    void permutesOnlyTheMovedRange() {
+        var items = items(10);
+        source.setAll(items);
+        changeCount = 0;
+        subChanges.clear();
+
+        items.get(6).key.set(25);
+        items.get(3).key.set(55);
+        assertThat(list.get(3)).isSameInstanceAs(items.get(3));
+        runReorders();
+
+        assertThat(changeCount).isEqualTo(1);
+        assertThat(subChanges).containsExactly(new SubChange(3, 7, true, List.of()));
+        assertInStep(BY_KEY);
+    }
+
+    @Test
+    void coalescesInvalidationsIntoOneReorder() {
+        var items = items(100);
+        source.setAll(items);
+        changeCount = 0;
+
+        var random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            items.get(random.nextInt(items.size())).key.set(random.nextInt(2000));
+        }
+
+        assertThat(reorders).hasSize(1);
+        assertThat(changeCount).isEqualTo(0);
+        runReorders();
+        assertThat(changeCount).isEqualTo(1);
+        assertInStep(BY_KEY);
+
+        // Nothing left to do once it has run
+        list.reorder();
+        assertThat(changeCount).isEqualTo(1);
+    }
+
+    @Test
+    void followsRandomReorders() {
+        var items = items(200);
+        source.setAll(items);
+        var random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            int moves = random.nextInt(10) == 0 ? 150 : random.nextInt(5);
+            for (int i = 0; i < moves; i++) {
+                // Few distinct keys, so there are ties
+                items.get(random.nextInt(items.size())).key.set(random.nextInt(50));
+            }
+            runReorders();
+            assertInStep(BY_KEY);
+        }
+    }
+
+    @Test
+    void mergesRemovalsAndAdditionsFromOneChange() {
+        var items = items(20);
+        source.setAll(items.subList(0, 15));
+        // Still waiting to be re-positioned when the change comes in
+        items.get(2).key.set(135);
+        changeCount = 0;
+        subChanges.clear();
+
+        // Removes some, keeps some, and adds new ones between the kept ones
+        var replacement = new ArrayList<Item>();
+        for (int i = 0; i < 20; i++) {
+            if (i % 3 != 0) {
+                replacement.add(items.get(i));
+            }
+        }
+        var extra = new Item("extra", 71);
+        replacement.add(4, extra);
+        source.setAll(replacement);
+
+        assertInStep(BY_KEY);
+        // The pending reorder, then the change itself
+        assertThat(changeCount).isEqualTo(2);
+        assertThat(list).contains(extra);
+        // Elements in both the old and new contents aren't moved
+        for (SubChange subChange : subChanges) {
+            assertThat(subChange.removed()).containsNoneIn(replacement);
+        }
+
+        // Removed elements aren't watched any more, added ones are
+        items.get(0).key.set(-1);
+        items.get(17).key.set(-1);
+        runReorders();
+        assertThat(list.get(0)).isSameInstanceAs(items.get(17));
+        assertInStep(BY_KEY);
+
+        source.removeAll(items.get(1), items.get(5), extra);
+        assertInStep(BY_KEY);
+    }
+
+    @Test
+    void switchesComparators() {
+        var items = items(30);
+        var shuffled = new ArrayList<>(items);
+        Collections.shuffle(shuffled, new Random(5));
+        source.setAll(shuffled);
+        assertInStep(BY_KEY);
+
+        list.setComparator(null);
+        assertInStep(null);
+        // The source order is kept, through every kind of change
+        items.get(4).key.set(1000);
+        assertThat(reorders).isEmpty();
+        FXCollections.sort(source, BY_KEY.reversed());
+        assertInStep(null);
+        source.remove(3, 6);
+        source.add(2, new Item("new", 5));
+        source.set(7, new Item("replacement", 15));
+        assertInStep(null);
+
+        list.setComparator(BY_KEY);
+        assertInStep(BY_KEY);
+        items.get(10).key.set(-5);
+        runReorders();
+        assertInStep(BY_KEY);
+
+        list.setComparator(BY_KEY.reversed());
+        assertInStep(BY_KEY.reversed());
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.util;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+class MappedListTest {
+    // Stands in for a view that subscribes to something while it is mapped
+    private static final class Subscriber {
+        private final Integer source;
+        private boolean disposed;
+
+        private Subscriber(Integer source) {
+            this.source = source;
+        }
+    }
+
+    private int liveSubscribers;
+
+    private Subscriber subscribe(Integer source) {
+        liveSubscribers++;
+        return new Subscriber(source);
+    }
+
+    private void dispose(Subscriber subscriber) {
+        assertWithMessage("disposed twice").that(subscriber.disposed).isFalse();
+        subscriber.disposed = true;
+        liveSubscribers--;
+    }
+
+    @Test
+    void mapsEachElementOnce() {
+        var source = FXCollections.observableArrayList(1, 2, 3);
+        var mapped = new MappedList<>(source, this::subscribe, this::dispose);
+
+        var first = mapped.get(0);
+        for (int i = 0; i < 10; i++) {
+            mapped.forEach(subscriber -> {
+            });
+            assertThat(mapped.get(0)).isSameInstanceAs(first);
+        }
+        assertThat(liveSubscribers).isEqualTo(3);
+    }
+
+    @Test
+    void keepsMappingsAcrossPermutations() {
+        var source = FXCollections.observableArrayList(3, 1, 2);
+        var mapped = new MappedList<>(source, this::subscribe, this::dispose);
+        var before = new ArrayList<>(mapped);
+
+        FXCollections.sort(source);
+
+        assertThat(liveSubscribers).isEqualTo(3);
+        assertThat(mapped).containsExactlyElementsIn(before);
+        assertSourcesMatch(source, mapped);
+    }
+
+    @Test
+    void subscribersFollowEntriesThroughChurn() {
+        var random = new Random(42);
+        ObservableList<Integer> source = FXCollections.observableArrayList();
+        var mapped = new MappedList<>(source, this::subscribe, this::dispose);
+        // Listeners may look at removed elements, which must not create subscribers
+        mapped.addListener((ListChangeListener<Subscriber>) change -> {
+            while (change.next()) {
+                change.getRemoved().forEach(subscriber -> {
+                });
+            }
+        });
+
+        int next = 0;
+        for (int i = 0; i < 100_000; i++) {
+            switch (random.nextInt(7)) {
+                case 0, 1 -> source.add(random.nextInt(source.size() + 1), next++);
+                case 2 -> {
+                    if (!source.isEmpty()) {
+                        source.remove(random.nextInt(source.size()));
+                    }
+                }
+                case 3 -> {
+                    if (!source.isEmpty()) {
+                        source.set(random.nextInt(source.size()), next++);
+                    }
+                }
+                case 4 -> {
+                    // Removes and adds back in one change
+                    if (!source.isEmpty()) {
+                        var kept = new ArrayList<>(source.subList(0, random.nextInt(source.size())));
+                        kept.add(next++);
+                        source.setAll(kept);
+                    }
+                }
+                case 5 -> {
+                    if (source.size() > 2) {
+                        int from = random.nextInt(source.size() - 1);
+                        source.remove(from, from + 1 + random.nextInt(Math.min(10, source.size() - from)));
+                    }
+                }
+                default -> FXCollections.sort(source, random.nextBoolean()
+                    ? Comparator.naturalOrder()
+                    : Comparator.reverseOrder());
+            }
+            assertWithMessage("live subscribers after step " + i).that(liveSubscribers).isEqualTo(source.size());
+        }
+        assertSourcesMatch(source, mapped);
+
+        source.clear();
+        assertThat(liveSubscribers).isEqualTo(0);
+    }
+
+    private static void assertSourcesMatch(List<Integer> source, List<Subscriber> mapped) {
+        assertThat(mapped).hasSize(source.size());
+        for (int i = 0; i < source.size(); i++) {
+            assertThat(mapped.get(i).source).isSameInstanceAs(source.get(i));
+            assertThat(mapped.get(i).disposed).isFalse();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.app.util;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+class ObservableValueListTest {
+    private record Value(int key, int version) {
+    }
+
+    private final ObservableMap<Integer, Value> map = FXCollections.observableMap(new HashMap<>());
+    private final ObservableValueList<Value> list = new ObservableValueList<>(
+        map, Comparator.comparingInt(Value::key)
+    );
+    // Kept in step with the list by applying each reported change
+    private final List<Value> mirror = new ArrayList<>();
+    private int changeCount;
+    // Listener failures are only logged by the list, so they're kept to fail the test with
+    private @Nullable Throwable listenerFailure;
+
+    ObservableValueListTest() {
+        list.addListener((ListChangeListener<Value>) change -> {
+            changeCount++;
+            try {
+                while (change.next()) {
+                    assertThat(change.wasPermutated()).isFalse();
+                    var removedRange = mirror.subList(change.getFrom(), change.getFrom() + change.getRemovedSize());
+                    assertThat(removedRange).containsExactlyElementsIn(change.getRemoved()).inOrder();
+                    removedRange.clear();
+                    mirror.addAll(change.getFrom(), change.getAddedSubList());
+                }
+            } catch (Throwable t) {
+                if (listenerFailure == null) {
+                    listenerFailure = t;
+                }
+            }
+        });
+    }
+
+    @AfterEach
+    void rethrowListenerFailure() throws Throwable {
+        if (listenerFailure != null) {
+            throw listenerFailure;
+        }
+    }
+
+    @Test
+    void reportsSingleChanges() {
+        map.put(2, new Value(2, 0));
+        map.put(1, new Value(1, 0));
+        map.put(2, new Value(2, 1));
+        map.remove(1);
+
+        assertThat(changeCount).isEqualTo(4);
+        assertThat(list).containsExactly(new Value(2, 1));
+        assertThat(mirror).containsExactlyElementsIn(list).inOrder();
+    }
+
+    @Test
+    void reportsEachBatchAsOneChange() {
+        var random = new Random(42);
+        for (int batch = 0; batch < 200; batch++) {
+            // Mostly small batches, with some large ones
+            int size = random.nextInt(10) == 0 ? 1500 + random.nextInt(1000) : random.nextInt(300);
+            int version = batch;
+            int before = changeCount;
+            list.batch(() -> {
+                for (int i = 0; i < size; i++) {
+                    int key = random.nextInt(5000);
+                    if (random.nextInt(3) == 0) {
+                        map.remove(key);
+                    } else {
+                        map.put(key, new Value(key, version));
+                    }
+                }
+            });
+
+            assertWithMessage("changes reported for batch " + batch).that(changeCount - before).isAtMost(1);
+            var expected = new ArrayList<>(map.values());
+            expected.sort(Comparator.comparingInt(Value::key));
+            assertThat(list).containsExactlyElementsIn(expected).inOrder();
+            assertThat(mirror).containsExactlyElementsIn(expected).inOrder();
+        }
+    }
+
+    @Test
+    void feedsMappedListsThroughBatches() {
+        var live = new int[1];
+        ObservableList<Object> mapped = new MappedList<>(list, value -> {
+            live[0]++;
+            return new Object();
+        }, mappedValue -> live[0]--);
+        var random = new Random(7);
+        for (int batch = 0; batch < 200; batch++) {
+            int size = random.nextInt(10) == 0 ? 2000 : random.nextInt(300);
+            list.batch(() -> {
+                for (int i = 0; i < size; i++) {
+                    int key = random.nextInt(3000);
+                    if (random.nextInt(3) == 0) {
+                        map.remove(key);
+                    } else {
+                        map.put(key, new Value(key, 0));
+                    }
+                }
+            });
+
+            assertThat(mapped).hasSize(list.size());
+            assertThat(live[0]).isEqualTo(list.size());
+        }
+    }
+}
@@ -3,6 +3,7 @@ import org.cadixdev.gradle.licenser.LicenseExtension
 plugins {
     id("net.researchgate.release") version "2.8.1"
     id("org.cadixdev.licenser") version "0.6.1" apply false
+    id("me.champeau.jmh") version "0.6.5" apply false
 }
 
 configure<net.researchgate.release.ReleaseExtension> {
@@ -14,6 +15,31 @@ subprojects {
 
     repositories {
         mavenCentral()
+        maven {
+            name = "Sonatype Snapshots"
+            url = uri("https://oss.sonatype.org/content/repositories/snapshots/")
+        }
+        mavenLocal {
+            content {
+                includeGroup("com.cronutils")
+            }
+        }
+    }
+
+    configurations.all {
+        resolutionStrategy {
+            dependencySubstitution {
+                val injectApi = libs.jakarta.injectApi.get()
+                substitute(module("javax.inject:javax.inject:1"))
+                    .using(
+                        module(
+                            "${injectApi.module.group}:${injectApi.module.name}:${injectApi.versionConstraint.requiredVersion}"
+                        )
+                    )
+            }
+        }
+        // This is just noise for us, we don't need it
+        exclude(group = "com.google.guava", module = "listenablefuture")
     }
 
     configure<LicenseExtension> {
@@ -30,4 +56,13 @@ subprojects {
             toolchain.languageVersion.set(JavaLanguageVersion.of(16))
         }
     }
+
+    plugins.withId("me.champeau.jmh") {
+        configure<me.champeau.jmh.JmhParameters> {
+            jmhVersion.set(libs.versions.jmh.get())
+            // Kept as JSON to compare between releases
+            resultFormat.set("JSON")
+            resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+        }
+    }
 }
@@ -0,0 +1,48 @@
+plugins {
+    `java-library`
+    id("me.champeau.jmh")
+}
+
+dependencies {
+    compileOnly(libs.jetbrains.annotations)
+    compileOnly(libs.checkerframework.qual)
+
+    annotationProcessor(libs.dagger.compiler)
+
+    implementation(platform(libs.log4j.bom))
+    implementation(libs.log4j.api)
+
+    implementation(libs.dagger.core)
+    implementation(libs.guava)
+
+    api(libs.directories)
+
+    api(platform(libs.jackson.bom))
+    api(libs.jackson.databind)
+    implementation(libs.jackson.datatype.jsr310)
+    implementation(libs.jackson.datatype.jdk8)
+
+    api(platform(libs.reactor.bom))
+    api(libs.reactor.core)
+
+    api(libs.cronutils)
+
+    testImplementation(platform(libs.junit.bom))
+    testImplementation(libs.junit.jupiter.api)
+    testRuntimeOnly(libs.junit.jupiter.engine)
+
+    testImplementation(libs.truth) {
+        exclude(group = "junit")
+    }
+}
+
+tasks.compileJava {
+    options.javaModuleVersion.set(provider { project.version.toString() })
+    // cron-utils, directories-jvm and reactor-core are automatic modules, but their types are part of the API, so they
+    // have to be required transitively
+    options.compilerArgs.add("-Xlint:-requires-transitive-automatic")
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
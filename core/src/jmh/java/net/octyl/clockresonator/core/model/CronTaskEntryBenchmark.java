@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import net.octyl.clockresonator.core.util.CronConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CronTaskEntry} occurrences, as seen by the rest of the application (i.e. including caching).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CronTaskEntryBenchmark {
+    private static final List<String> CORPUS = List.of(
+        "* * * * *",
+        "*/5 * * * *",
+        "0 * * * *",
+        "30 2 * * *",
+        "0 9 * * 1-5",
+        "0 0 1 * *",
+        "0 0 1 1 *",
+        "15 10 * * 6,0",
+        "0 */4 * * *",
+        "0 9-17 * * 1-5",
+        "0 0 29 2 *",
+        "0 12 13 * 5",
+        "0 0 31 * *",
+        "0 8 * 3-5 *"
+    );
+
+    private CronTaskEntry[] entries;
+    private Instant completionTime;
+
+    @Setup
+    public void setup() {
+        var lastOccurrence = Instant.parse("2021-06-01T12:00:00Z");
+        entries = CORPUS.stream()
+            .map(expression -> new CronTaskEntry(
+                expression, expression, ZoneId.of("America/Los_Angeles"), CronConstants.PARSER.parse(expression),
+                Optional.empty(), lastOccurrence, null
+            ))
+            .toArray(CronTaskEntry[]::new);
+        completionTime = lastOccurrence.plusSeconds(3600);
+    }
+
+    /**
+     * Repeated calls on the same entries, as done when rendering.
+     */
+    @Benchmark
+    public void nextOccurrence(Blackhole blackhole) {
+        for (CronTaskEntry entry : entries) {
+            blackhole.consume(entry.nextOccurrence());
+        }
+    }
+
+    /**
+     * Completing an entry creates a new one, which has nothing cached yet.
+     */
+    @Benchmark
+    public void nextTaskEntry(Blackhole blackhole) {
+        for (CronTaskEntry entry : entries) {
+            blackhole.consume(entry.nextTaskEntry(completionTime).orElseThrow().nextOccurrence());
+        }
+    }
+}
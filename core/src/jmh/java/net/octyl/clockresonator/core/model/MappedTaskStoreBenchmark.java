@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures opening and querying a {@link MappedTaskStore}, which should not depend much on how many entries it has.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappedTaskStoreBenchmark {
+    // Entries written between flushes while filling the store
+    private static final int FILL_BATCH_SIZE = 10_000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int size;
+
+    private Path directory;
+    private Path file;
+    private MappedTaskStore store;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("clock-resonator-bench");
+        file = directory.resolve("tasks.store");
+        // Entries are generated as they are written, 10M of them don't fit in a default heap
+        try (var fill = MappedTaskStore.open(file)) {
+            for (int i = 0; i < size; i++) {
+                fill.put(TaskPersistenceBenchmark.generateEntry(i));
+                if (i % FILL_BATCH_SIZE == FILL_BATCH_SIZE - 1) {
+                    fill.flush();
+                }
+            }
+        }
+        store = MappedTaskStore.open(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Startup cost, mapping the files and checking the header.
+     */
+    @Benchmark
+    public int open() throws IOException {
+        try (var opened = MappedTaskStore.open(file)) {
+            return opened.size();
+        }
+    }
+
+    @Benchmark
+    public Optional<TaskEntry> get() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        return store.get(new UUID(0x5EEDL, i).toString());
+    }
+
+    /**
+     * Entries due in an hour-long window, found by a binary search of the sorted next occurrences.
+     */
+    @Benchmark
+    public List<TaskEntry> findByNextOccurrence() throws IOException {
+        var from = TaskPersistenceBenchmark.BASE_TIME.plusSeconds(ThreadLocalRandom.current().nextInt(size));
+        return store.findByNextOccurrence(from, from.plusSeconds(3600));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import net.octyl.clockresonator.core.inject.JsonModule;
+import net.octyl.clockresonator.core.persist.Durability;
+import net.octyl.clockresonator.core.persist.PersistenceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link TaskLoadStrategy load strategies} on large snapshots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TaskLoadBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param
+    public TaskLoadStrategy strategy;
+
+    private final JsonMapper jsonMapper = JsonModule.provideMapper();
+    // Loading a snapshot in the journal's own format doesn't write anything
+    private final PersistenceService persistence = new PersistenceService(Durability.NONE, Duration.ZERO);
+    private Path snapshotFile;
+
+    @Setup
+    public void setup() throws IOException {
+        snapshotFile = Files.createTempFile("clock-resonator-bench", "tasks.json");
+        jsonMapper.writerFor(new TypeReference<Collection<TaskEntry>>() {
+        }).writeValue(snapshotFile.toFile(), TaskPersistenceBenchmark.generateEntries(size));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(snapshotFile);
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole) throws IOException {
+        new TaskJournal(jsonMapper, snapshotFile, TaskSnapshotFormat.JSON, persistence)
+            .load(strategy, blackhole::consume, List::of);
+    }
+}
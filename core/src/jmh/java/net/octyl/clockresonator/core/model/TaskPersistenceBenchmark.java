@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.cronutils.model.Cron;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import net.octyl.clockresonator.core.inject.JsonModule;
+import net.octyl.clockresonator.core.persist.Durability;
+import net.octyl.clockresonator.core.persist.PersistenceService;
+import net.octyl.clockresonator.core.util.CronConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures saving and loading entries through the {@link TaskJournal}, at several dataset sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskPersistenceBenchmark {
+    // Records in one save, roughly what one journal batch holds
+    private static final int SAVE_BATCH_SIZE = 100;
+    static final Instant BASE_TIME = Instant.parse("2021-06-01T12:00:00Z");
+    private static final Cron WEEKDAY_MORNINGS = CronConstants.PARSER.parse("0 9 * * 1-5");
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param
+    public TaskSnapshotFormat format;
+
+    private final JsonMapper jsonMapper = JsonModule.provideMapper();
+    // Synced commits would mostly measure the disk
+    private final PersistenceService persistence = new PersistenceService(Durability.NONE, Duration.ZERO);
+    private final ObjectWriter snapshotWriter = jsonMapper.writerFor(new TypeReference<Collection<TaskEntry>>() {
+    });
+    private Path directory;
+    private List<TaskEntry> entries;
+    private TaskJournal saveJournal;
+    private int saveCursor;
+
+    static List<TaskEntry> generateEntries(int size) {
+        var entries = new ArrayList<TaskEntry>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(generateEntry(i));
+        }
+        return entries;
+    }
+
+    static TaskEntry generateEntry(int i) {
+        // Same shape as the random UUIDs the application creates
+        var id = new UUID(0x5EEDL, i).toString();
+        var last = BASE_TIME.plusSeconds(i);
+        return switch (i % 3) {
+            case 0 -> new OneTimeTaskEntry(id, "One-time " + i, last, last.plusSeconds(86_400));
+            case 1 -> new CronTaskEntry(
+                id, "Cron " + i, ZoneId.of("UTC"), WEEKDAY_MORNINGS, Optional.empty(), last, null
+            );
+            default -> new IntervalTaskEntry(id, "Interval " + i, Period.ofDays(7), Optional.empty(), last);
+        };
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("clock-resonator-bench");
+        entries = generateEntries(size);
+        var loadSnapshot = format.snapshotFile(directory.resolve("load/tasks.json"));
+        Files.createDirectories(loadSnapshot.getParent());
+        Files.write(loadSnapshot, serializeSnapshot());
+        saveJournal = new TaskJournal(jsonMapper, directory.resolve("save/tasks.json"), format, persistence);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Load everything from disk.
+     */
+    @Benchmark
+    public void load(Blackhole blackhole) throws IOException {
+        new TaskJournal(jsonMapper, directory.resolve("load/tasks.json"), format, persistence)
+            .load(TaskLoadStrategy.SEQUENTIAL, blackhole::consume, () -> entries);
+    }
+
+    /**
+     * Save a batch of changes, including the amortized cost of compacting everything.
+     */
+    @Benchmark
+    public void saveBatch() throws IOException {
+        var records = new ArrayList<TaskJournalRecord>(SAVE_BATCH_SIZE);
+        for (int i = 0; i < SAVE_BATCH_SIZE; i++) {
+            records.add(new TaskJournalRecord.Put(entries.get(saveCursor++ % entries.size())));
+        }
+        saveJournal.save(records, () -> entries);
+        persistence.flush().join();
+    }
+
+    /**
+     * Serialize a full snapshot, as written when compacting.
+     */
+    @Benchmark
+    public byte[] serializeSnapshot() throws IOException {
+        return switch (format) {
+            case JSON -> snapshotWriter.writeValueAsBytes(entries);
+            case BINARY -> BinaryTaskSnapshot.write(entries);
+        };
+    }
+}
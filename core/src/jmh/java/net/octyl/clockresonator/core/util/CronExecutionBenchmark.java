@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.util;
+
+import com.cronutils.model.time.ExecutionTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compiled bitset engine against cron-utils over a corpus of expressions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CronExecutionBenchmark {
+    static final List<String> CORPUS = List.of(
+        "* * * * *",
+        "*/5 * * * *",
+        "0 * * * *",
+        "30 2 * * *",
+        "0 9 * * 1-5",
+        "0 0 1 * *",
+        "0 0 1 1 *",
+        "15 10 * * 6,0",
+        "0 */4 * * *",
+        "0 9-17 * * 1-5",
+        "0 0 29 2 *",
+        "0 12 13 * 5",
+        "45 23 28-31 * *",
+        "0 0 * * 0",
+        "5,35 * * * *",
+        "0 6 1-7 * 1",
+        "0 0 31 * *",
+        "20 4 */2 * *",
+        "0 8 * 3-5 *",
+        "59 23 31 12 *"
+    );
+
+    @Param({"bitset", "cron-utils"})
+    public String engine;
+
+    @Param({"UTC", "America/New_York"})
+    public String zone;
+
+    private ExecutionTime[] executionTimes;
+    private ZonedDateTime base;
+
+    @Setup
+    public void setup() {
+        executionTimes = CORPUS.stream()
+            .map(CronConstants.PARSER::parse)
+            .map(cron -> engine.equals("bitset") ? BitsetExecutionTime.compile(cron) : ExecutionTime.forCron(cron))
+            .toArray(ExecutionTime[]::new);
+        base = ZonedDateTime.of(2021, 3, 14, 1, 30, 0, 0, ZoneId.of(zone));
+    }
+
+    @Benchmark
+    public void nextExecution(Blackhole blackhole) {
+        for (ExecutionTime executionTime : executionTimes) {
+            blackhole.consume(executionTime.nextExecution(base));
+        }
+    }
+
+    @Benchmark
+    public void lastExecution(Blackhole blackhole) {
+        for (ExecutionTime executionTime : executionTimes) {
+            blackhole.consume(executionTime.lastExecution(base));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+module net.octyl.clockresonator.core {
+    exports net.octyl.clockresonator.core.inject;
+    exports net.octyl.clockresonator.core.jackson;
+    exports net.octyl.clockresonator.core.model;
+    exports net.octyl.clockresonator.core.notify;
+    exports net.octyl.clockresonator.core.persist;
+    exports net.octyl.clockresonator.core.util;
+    requires static java.inject;
+    requires transitive com.cronutils;
+    requires com.google.common;
+    requires com.fasterxml.jackson.annotation;
+    requires com.fasterxml.jackson.core;
+    requires transitive com.fasterxml.jackson.databind;
+    requires com.fasterxml.jackson.datatype.jdk8;
+    requires com.fasterxml.jackson.datatype.jsr310;
+    requires dagger;
+    requires transitive dev.dirs;
+    requires java.base;
+    requires org.apache.logging.log4j;
+    requires org.checkerframework.checker.qual;
+    requires transitive reactor.core;
+    // Required for serialization to work
+    opens net.octyl.clockresonator.core.model to com.fasterxml.jackson.databind;
+}
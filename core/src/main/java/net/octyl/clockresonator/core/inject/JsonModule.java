@@ -16,7 +16,7 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package net.octyl.clockresonator.app.inject;
+package net.octyl.clockresonator.core.inject;
 
 import com.fasterxml.jackson.core.json.JsonWriteFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -24,7 +24,7 @@ import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import dagger.Module;
 import dagger.Provides;
-import net.octyl.clockresonator.app.jackson.CronModule;
+import net.octyl.clockresonator.core.jackson.CronModule;
 
 import javax.inject.Singleton;
 
@@ -16,7 +16,7 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package net.octyl.clockresonator.app.jackson;
+package net.octyl.clockresonator.core.jackson;
 
 import com.cronutils.model.Cron;
 import com.cronutils.model.CronType;
@@ -26,7 +26,7 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
-import net.octyl.clockresonator.app.util.CronConstants;
+import net.octyl.clockresonator.core.util.CronConstants;
 
 import java.io.IOException;
 
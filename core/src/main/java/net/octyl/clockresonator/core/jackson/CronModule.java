@@ -16,17 +16,23 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package net.octyl.clockresonator.app.jackson;
+package net.octyl.clockresonator.core.jackson;
 
 import com.cronutils.model.Cron;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.core.util.VersionUtil;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import net.octyl.clockresonator.app.inject.ApplicationInfoModule;
+
+import java.lang.module.ModuleDescriptor;
+import java.util.Optional;
 
 public class CronModule extends SimpleModule {
     private static final Version VERSION = VersionUtil.parseVersion(
-        ApplicationInfoModule.provideApplicationVersion(),
+        // No descriptor when loaded from the class path
+        Optional.ofNullable(CronModule.class.getModule().getDescriptor())
+            .flatMap(ModuleDescriptor::version)
+            .map(ModuleDescriptor.Version::toString)
+            .orElse("UNKNOWN"),
         "net.octyl.clockresonator",
         "clockresonator-jackson-cron"
     );
@@ -16,7 +16,7 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package net.octyl.clockresonator.app.jackson;
+package net.octyl.clockresonator.core.jackson;
 
 import com.cronutils.model.Cron;
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.cronutils.model.Cron;
+import net.octyl.clockresonator.core.util.CronConstants;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A compact binary encoding of a snapshot of task entries.
+ *
+ * <p>
+ * The file starts with a magic number, a version and the entry count, followed by the entries. Each entry starts with
+ * a tag byte for its type, whether its ID is a UUID, and whether it has a stop time. UUIDs are stored as two longs,
+ * and instants as their epoch seconds and nanos. An entry's last occurrence is stored relative to the previous entry's,
+ * as entries tend to be close together in time, and its other instants relative to its last occurrence. The seconds
+ * carry a bit for whether nanos follow, as most instants are whole seconds. Other numbers are stored as
+ * variable-length integers. Zone IDs and cron expressions are stored in a dictionary that is built up while writing:
+ * the first use of a value writes it out, later uses refer to its index. This also means each distinct cron
+ * expression is only parsed once when reading.
+ * </p>
+ *
+ * <p>
+ * Version 1 stored every instant relative to the previous one, with its nanos and a byte for whether the stop time is
+ * present. It can still be read.
+ * </p>
+ */
+final class BinaryTaskSnapshot {
+    private static final int MAGIC = 0x43525453; // CRTS
+    private static final byte VERSION = 2;
+    private static final byte VERSION_1 = 1;
+
+    private static final byte TYPE_ONE_TIME = 0;
+    private static final byte TYPE_CRON = 1;
+    private static final byte TYPE_INTERVAL = 2;
+    private static final byte TYPE_MASK = 0x3F;
+    private static final byte STOP_TIME_FLAG = 0x40;
+    private static final byte UUID_ID_FLAG = (byte) 0x80;
+    // Most entries take a little under this, so the output rarely has to grow
+    private static final int EXPECTED_ENTRY_SIZE = 40;
+
+    /**
+     * Write a snapshot.
+     *
+     * @param entries the entries
+     * @return the snapshot file contents
+     */
+    static byte[] write(Collection<? extends TaskEntry> entries) {
+        var writer = new Writer(16 + entries.size() * EXPECTED_ENTRY_SIZE);
+        writer.writeInt(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeVarInt(entries.size());
+        for (TaskEntry entry : entries) {
+            writer.writeEntry(entry);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Read a snapshot.
+     *
+     * @param contents the snapshot file contents
+     * @param entryConsumer receives the entries, in order
+     */
+    static void read(byte[] contents, Consumer<? super TaskEntry> entryConsumer) throws IOException {
+        var reader = new Reader(ByteBuffer.wrap(contents));
+        try {
+            reader.readHeaderAndEntries(entryConsumer);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated binary task snapshot", e);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt binary task snapshot", e);
+        }
+    }
+
+    // Writes straight into an array sized for the whole snapshot, as growing and copying it was most of the cost
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        // Entries usually share their Cron and ZoneId instances, and Cron.asString is not cheap
+        private final Map<Object, Integer> dictionaryByIdentity = new IdentityHashMap<>();
+        private long previousSeconds;
+
+        private Writer(int expectedSize) {
+            this.buffer = new byte[expectedSize];
+        }
+
+        void writeEntry(TaskEntry entry) {
+            int tag;
+            Optional<Instant> stopTime = Optional.empty();
+            if (entry instanceof OneTimeTaskEntry) {
+                tag = TYPE_ONE_TIME;
+            } else if (entry instanceof CronTaskEntry cron) {
+                tag = TYPE_CRON;
+                stopTime = cron.stopTime();
+            } else if (entry instanceof IntervalTaskEntry interval) {
+                tag = TYPE_INTERVAL;
+                stopTime = interval.stopTime();
+            } else {
+                throw new IllegalStateException("Unknown task entry type " + entry.getClass());
+            }
+            if (stopTime.isPresent()) {
+                tag |= STOP_TIME_FLAG;
+            }
+            var uuid = TaskIds.asCanonicalUuid(entry.id());
+            if (uuid != null) {
+                writeByte(tag | UUID_ID_FLAG);
+                writeLong(uuid.getMostSignificantBits());
+                writeLong(uuid.getLeastSignificantBits());
+            } else {
+                writeByte(tag);
+                writeString(entry.id());
+            }
+            writeString(entry.name());
+            long lastSeconds = entry.lastOccurrence().getEpochSecond();
+            writeInstant(entry.lastOccurrence(), previousSeconds);
+            previousSeconds = lastSeconds;
+            if (entry instanceof OneTimeTaskEntry oneTime) {
+                writeInstant(oneTime.nextOccurrence(), lastSeconds);
+            } else if (entry instanceof CronTaskEntry cron) {
+                writeDictionary(cron.timeZone(), ZoneId::getId);
+                writeDictionary(cron.cron(), Cron::asString);
+                writeInstant(cron.executionBase(), lastSeconds);
+            } else if (entry instanceof IntervalTaskEntry interval) {
+                writeVarInt(zigZag(interval.interval().getYears()));
+                writeVarInt(zigZag(interval.interval().getMonths()));
+                writeVarInt(zigZag(interval.interval().getDays()));
+            }
+            if (stopTime.isPresent()) {
+                writeInstant(stopTime.get(), lastSeconds);
+            }
+        }
+
+        private <T> void writeDictionary(T value, Function<T, String> toString) {
+            var index = dictionaryByIdentity.get(value);
+            if (index == null) {
+                var string = toString.apply(value);
+                index = dictionary.get(string);
+                if (index == null) {
+                    // The next free index means "new value follows"
+                    index = dictionary.size();
+                    dictionary.put(string, index);
+                    writeVarInt(index);
+                    writeString(string);
+                    dictionaryByIdentity.put(value, index);
+                    return;
+                }
+                dictionaryByIdentity.put(value, index);
+            }
+            writeVarInt(index);
+        }
+
+        private void writeInstant(Instant instant, long relativeToSeconds) {
+            int nanos = instant.getNano();
+            writeVarLong(zigZag(instant.getEpochSecond() - relativeToSeconds) << 1 | (nanos != 0 ? 1 : 0));
+            if (nanos != 0) {
+                // Most clocks only have micro-second precision, so use the shorter form when possible
+                if (nanos % 1000 == 0) {
+                    writeVarInt((nanos / 1000) << 1);
+                } else {
+                    writeVarInt((nanos << 1) | 1);
+                }
+            }
+        }
+
+        private void writeString(String value) {
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) >= 0x80) {
+                    writeBytes(value.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            // ASCII, so the chars are the UTF-8 bytes, and there's no need to encode into a new array
+            writeVarInt(length);
+            ensureRemaining(length);
+            for (int i = 0; i < length; i++) {
+                buffer[position++] = (byte) value.charAt(i);
+            }
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensureRemaining(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(Integer.toUnsignedLong(value));
+        }
+
+        private void writeVarLong(long value) {
+            ensureRemaining(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeByte(int value) {
+            ensureRemaining(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureRemaining(Integer.BYTES);
+            for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeLong(long value) {
+            ensureRemaining(Long.BYTES);
+            for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void ensureRemaining(int bytes) {
+            if (buffer.length - position < bytes) {
+                buffer = Arrays.copyOf(buffer, Math.max(position + bytes, buffer.length * 2));
+            }
+        }
+
+        byte[] toByteArray() {
+            return position == buffer.length ? buffer : Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, ZoneId> zones = new HashMap<>();
+        private final Map<String, Cron> crons = new HashMap<>();
+        private long previousSeconds;
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void readHeaderAndEntries(Consumer<? super TaskEntry> entryConsumer) throws IOException {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary task snapshot");
+            }
+            byte version = buffer.get();
+            if (version != VERSION && version != VERSION_1) {
+                throw new IOException("Unsupported binary task snapshot version " + version);
+            }
+            int count = readVarInt();
+            for (int i = 0; i < count; i++) {
+                entryConsumer.accept(version == VERSION ? readEntry() : readVersion1Entry());
+            }
+        }
+
+        private TaskEntry readEntry() throws IOException {
+            byte tag = buffer.get();
+            var id = readId(tag);
+            var name = readString();
+            var lastOccurrence = readInstant(previousSeconds);
+            long lastSeconds = lastOccurrence.getEpochSecond();
+            previousSeconds = lastSeconds;
+            return switch (tag & TYPE_MASK) {
+                case TYPE_ONE_TIME -> new OneTimeTaskEntry(id, name, lastOccurrence, readInstant(lastSeconds));
+                case TYPE_CRON -> {
+                    var zone = readDictionary(zones, ZoneId::of);
+                    var cron = readDictionary(crons, CronConstants.PARSER::parse);
+                    var executionBase = readInstant(lastSeconds);
+                    yield new CronTaskEntry(
+                        id, name, zone, cron, readStopTime(tag, lastSeconds), lastOccurrence, executionBase
+                    );
+                }
+                case TYPE_INTERVAL -> new IntervalTaskEntry(
+                    id, name,
+                    Period.of(unZigZag(readVarInt()), unZigZag(readVarInt()), unZigZag(readVarInt())),
+                    readStopTime(tag, lastSeconds),
+                    lastOccurrence
+                );
+                default -> throw new IOException("Unknown task entry type " + (tag & TYPE_MASK));
+            };
+        }
+
+        private Optional<Instant> readStopTime(byte tag, long lastSeconds) {
+            return (tag & STOP_TIME_FLAG) != 0 ? Optional.of(readInstant(lastSeconds)) : Optional.empty();
+        }
+
+        private Instant readInstant(long relativeToSeconds) {
+            long value = readVarLong();
+            long seconds = relativeToSeconds + unZigZag(value >>> 1);
+            return Instant.ofEpochSecond(seconds, (value & 1) != 0 ? readNanos() : 0);
+        }
+
+        private TaskEntry readVersion1Entry() throws IOException {
+            byte tag = buffer.get();
+            var id = readId(tag);
+            var name = readString();
+            return switch (tag & TYPE_MASK) {
+                case TYPE_ONE_TIME -> new OneTimeTaskEntry(id, name, readVersion1Instant(), readVersion1Instant());
+                case TYPE_CRON -> new CronTaskEntry(
+                    id, name,
+                    readDictionary(zones, ZoneId::of),
+                    readDictionary(crons, CronConstants.PARSER::parse),
+                    readVersion1OptionalInstant(),
+                    readVersion1Instant(),
+                    readVersion1Instant()
+                );
+                case TYPE_INTERVAL -> new IntervalTaskEntry(
+                    id, name,
+                    Period.of(unZigZag(readVarInt()), unZigZag(readVarInt()), unZigZag(readVarInt())),
+                    readVersion1OptionalInstant(),
+                    readVersion1Instant()
+                );
+                default -> throw new IOException("Unknown task entry type " + (tag & TYPE_MASK));
+            };
+        }
+
+        private Optional<Instant> readVersion1OptionalInstant() {
+            return buffer.get() != 0 ? Optional.of(readVersion1Instant()) : Optional.empty();
+        }
+
+        private Instant readVersion1Instant() {
+            long seconds = previousSeconds + unZigZag(readVarLong());
+            previousSeconds = seconds;
+            return Instant.ofEpochSecond(seconds, readNanos());
+        }
+
+        private String readId(byte tag) {
+            if ((tag & UUID_ID_FLAG) != 0) {
+                return new UUID(buffer.getLong(), buffer.getLong()).toString();
+            }
+            return readString();
+        }
+
+        private <T> T readDictionary(Map<String, T> parsed, Function<String, T> parser) {
+            int index = readVarInt();
+            String value;
+            if (index == dictionary.size()) {
+                value = readString();
+                dictionary.add(value);
+            } else {
+                value = dictionary.get(index);
+            }
+            return parsed.computeIfAbsent(value, parser);
+        }
+
+        private long readNanos() {
+            int nanos = readVarInt();
+            return (nanos & 1) == 0 ? (nanos >>> 1) * 1000L : nanos >>> 1;
+        }
+
+        private String readString() {
+            int length = readVarInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            var value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+
+        private int readVarInt() {
+            // Ints are written as their unsigned value, so this restores the original bits
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private BinaryTaskSnapshot() {
+    }
+}
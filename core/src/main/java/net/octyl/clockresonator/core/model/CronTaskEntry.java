@@ -16,10 +16,10 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package net.octyl.clockresonator.app.model;
+package net.octyl.clockresonator.core.model;
 
 import com.cronutils.model.Cron;
-import com.cronutils.model.time.ExecutionTime;
+import net.octyl.clockresonator.core.util.CronExecutionCache;
 
 import java.time.Instant;
 import java.time.ZoneId;
@@ -42,9 +42,11 @@ public record CronTaskEntry(
 
     @Override
     public Instant nextOccurrence() {
-        return ExecutionTime.forCron(cron).nextExecution(executionBase.atZone(timeZone))
-            .orElseThrow(() -> new IllegalStateException("Unable to calculate next occurrence of task"))
-            .toInstant();
+        return CronExecutionCache.computeFor(this, () ->
+            CronExecutionCache.executionTime(cron).nextExecution(executionBase.atZone(timeZone))
+                .orElseThrow(() -> new IllegalStateException("Unable to calculate next occurrence of task"))
+                .toInstant()
+        );
     }
 
     @Override
@@ -0,0 +1,1028 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.cronutils.model.Cron;
+import net.octyl.clockresonator.core.util.CronConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * A task store kept in memory-mapped files, which can be opened and queried without reading every entry.
+ *
+ * <p>
+ * Entries are fixed-size records in the main file, with their strings (names, non-UUID IDs, zone IDs and cron
+ * expressions) in a side table next to it. Side table blocks are sized in powers of two and re-used through free
+ * lists, so replacing a string never needs a compaction. A hash index from ID to record is kept in a third file, and
+ * the records sorted by next occurrence in a fourth. Lookups and range scans read straight from the mappings. Changes
+ * are written in place, and the mappings are forced to disk once per {@link #flush()}.
+ * </p>
+ *
+ * <p>
+ * Changes to next occurrences are merged into the sorted file in one pass, on the next range scan or on close, so a
+ * batch of changes costs one pass instead of one per change. Flushing with unmerged changes marks the sorted file as
+ * stale, and the first range scan after opening it again rebuilds it.
+ * </p>
+ *
+ * <p>
+ * Writes are not atomic, so a crash can lose or tear the changes made since the last flush. If the store was not
+ * flushed before it was closed, opening it checks every record, drops the ones that no longer make sense, and
+ * rebuilds the index and free lists. Otherwise, opening only maps the files. Each mapping is limited to 2 GiB, which
+ * allows for about 22 million entries.
+ * </p>
+ *
+ * <p>
+ * This is not a {@link TaskStore}: {@link TaskEntryManager} keeps every entry in memory for its listeners, so it
+ * would read the whole store on startup anyway. It is for callers that only need lookups and range scans.
+ * </p>
+ */
+public final class MappedTaskStore implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int MAGIC = 0x43524D53; // CRMS
+    private static final int VERSION = 1;
+
+    // Main file header
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int CLEAN_OFFSET = 12;
+
+    // Record layout. String references are an int offset into the side table, then an int length.
+    private static final int RECORD_SIZE = 96;
+    private static final int FLAGS = 0;
+    // Either a UUID as two longs, or a string reference
+    private static final int ID = 4;
+    private static final int NAME = 20;
+    private static final int LAST_OCCURRENCE = 28;
+    private static final int NEXT_OCCURRENCE = 40;
+    private static final int STOP_TIME = 52;
+    private static final int CRON_ZONE = 64;
+    private static final int CRON_EXPRESSION = 72;
+    private static final int CRON_EXECUTION_BASE = 80;
+    private static final int INTERVAL_PERIOD = 64;
+    private static final int[] CRON_STRINGS = {CRON_ZONE, CRON_EXPRESSION};
+    private static final int[] NO_STRINGS = {};
+
+    private static final int TYPE_MASK = 0x3;
+    private static final int TYPE_ONE_TIME = 0;
+    private static final int TYPE_CRON = 1;
+    private static final int TYPE_INTERVAL = 2;
+    private static final int FLAG_UUID_ID = 0x4;
+    private static final int FLAG_STOP_TIME = 0x8;
+
+    // Side table header: the end of the allocated blocks, then a free list head per block size class
+    private static final int NAMES_END_OFFSET = 0;
+    private static final int FREE_LISTS_OFFSET = 4;
+    private static final int SIZE_CLASSES = 28;
+    private static final int NAMES_HEADER_SIZE = FREE_LISTS_OFFSET + SIZE_CLASSES * Integer.BYTES;
+    private static final int MIN_BLOCK_SIZE = 16;
+
+    // Next occurrence file: a header, then entries of the seconds, nanos and record number, sorted by the instant
+    private static final int DUE_HEADER_SIZE = 16;
+    private static final int DUE_COUNT_OFFSET = 0;
+    // Whether the entries match the records, it's cleared when flushing with changes that aren't merged yet
+    private static final int DUE_VALID_OFFSET = 4;
+    private static final int DUE_ENTRY_SIZE = 16;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_NAMES_BYTES = 64 * 1024;
+
+    /**
+     * Open a store, creating it if needed.
+     *
+     * @param file the main file of the store, the side table and index are saved next to it
+     * @return the store
+     */
+    public static MappedTaskStore open(Path file) throws IOException {
+        var store = new MappedTaskStore(file);
+        try {
+            store.initialize();
+        } catch (IOException | RuntimeException e) {
+            store.closeChannels();
+            throw e;
+        }
+        return store;
+    }
+
+    private final FileChannel recordsChannel;
+    private final FileChannel namesChannel;
+    private final FileChannel indexChannel;
+    private final FileChannel dueChannel;
+    private MappedByteBuffer records;
+    private MappedByteBuffer names;
+    private MappedByteBuffer index;
+    private MappedByteBuffer due;
+    private int count;
+    private int indexMask;
+    private boolean clean;
+    // Records whose next occurrence isn't in the sorted file yet
+    private final BitSet dueChanged = new BitSet();
+    // Parsing is expensive, and there are usually only a few distinct values
+    private final Map<String, ZoneId> zones = new HashMap<>();
+    private final Map<String, Cron> crons = new HashMap<>();
+
+    private MappedTaskStore(Path file) throws IOException {
+        var options = new StandardOpenOption[] {
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        };
+        this.recordsChannel = FileChannel.open(file, options);
+        this.namesChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".names"), options);
+        this.indexChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".index"), options);
+        this.dueChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".due"), options);
+    }
+
+    private void initialize() throws IOException {
+        boolean created = recordsChannel.size() == 0;
+        records = map(
+            recordsChannel, Math.max(recordsChannel.size(), HEADER_SIZE + (long) INITIAL_CAPACITY * RECORD_SIZE)
+        );
+        names = map(namesChannel, Math.max(namesChannel.size(), INITIAL_NAMES_BYTES));
+        if (created) {
+            records.putInt(MAGIC_OFFSET, MAGIC);
+            records.putInt(VERSION_OFFSET, VERSION);
+            records.putInt(COUNT_OFFSET, 0);
+            records.put(CLEAN_OFFSET, (byte) 1);
+            for (int i = 0; i < NAMES_HEADER_SIZE; i += Integer.BYTES) {
+                names.putInt(i, 0);
+            }
+            names.putInt(NAMES_END_OFFSET, NAMES_HEADER_SIZE);
+        } else {
+            if (records.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("Not a task store");
+            }
+            if (records.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException("Unsupported task store version " + records.getInt(VERSION_OFFSET));
+            }
+        }
+        count = records.getInt(COUNT_OFFSET);
+        clean = records.get(CLEAN_OFFSET) == 1;
+        if (count < 0 || count > recordCapacity()) {
+            throw new IOException("Corrupt task store, it claims to hold " + count + " entries");
+        }
+        due = map(dueChannel, Math.max(dueChannel.size(), dueCapacityBytes(Math.max(count, INITIAL_CAPACITY))));
+        if (due.getInt(DUE_VALID_OFFSET) != 1 || due.getInt(DUE_COUNT_OFFSET) != count) {
+            // Written with changes that weren't merged, or by an older store, so rebuild it when it's first needed
+            dueChanged.set(0, count);
+        }
+        if (!clean) {
+            recover();
+            return;
+        }
+        if (created) {
+            // Don't trust an index left behind by an older store
+            rebuildIndex(minIndexCapacity(0));
+            return;
+        }
+        long indexBytes = indexChannel.size();
+        int indexCapacity = (int) Math.min(indexBytes / Integer.BYTES, 1 << 30);
+        if (Integer.bitCount(indexCapacity) == 1 && indexCapacity >= minIndexCapacity(count)) {
+            index = map(indexChannel, (long) indexCapacity * Integer.BYTES);
+            indexMask = indexCapacity - 1;
+        } else {
+            rebuildIndex(minIndexCapacity(count));
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Task store is too large, " + size + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * {@return the number of entries}
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Find an entry by ID.
+     *
+     * @param id the ID
+     * @return the entry, if there is one
+     */
+    public synchronized Optional<TaskEntry> get(String id) {
+        int value = index.getInt(findSlot(Key.of(id)) * Integer.BYTES);
+        return value == 0 ? Optional.empty() : Optional.of(read(value - 1));
+    }
+
+    /**
+     * Find the entries due in a time range. Only the entries in the range are read.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the entries with a {@linkplain TaskEntry#nextOccurrence() next occurrence} in the range, in order
+     */
+    public synchronized List<TaskEntry> findByNextOccurrence(Instant from, Instant to) throws IOException {
+        mergeDueChanges();
+        // Binary search for the first entry at or after the start
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareDue(dueBase(middle), from) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        var found = new ArrayList<TaskEntry>();
+        for (int i = low; i < count && compareDue(dueBase(i), to) < 0; i++) {
+            found.add(read(due.getInt(dueBase(i) + Long.BYTES + Integer.BYTES)));
+        }
+        return found;
+    }
+
+    /**
+     * Read every entry, in storage order.
+     *
+     * @param action receives each entry
+     */
+    public synchronized void forEach(Consumer<? super TaskEntry> action) {
+        for (int record = 0; record < count; record++) {
+            action.accept(read(record));
+        }
+    }
+
+    /**
+     * Add or replace an entry. It is not saved to disk until the next {@link #flush()}.
+     *
+     * @param entry the entry
+     */
+    public synchronized void put(TaskEntry entry) throws IOException {
+        markDirty();
+        var key = Key.of(entry.id());
+        int slot = findSlot(key);
+        int value = index.getInt(slot * Integer.BYTES);
+        int record;
+        if (value != 0) {
+            record = value - 1;
+        } else {
+            if (minIndexCapacity(count + 1) > indexMask + 1) {
+                rebuildIndex((indexMask + 1) * 2);
+                slot = findSlot(key);
+            }
+            ensureRecordCapacity(count + 1);
+            record = count;
+            int base = base(record);
+            for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+                records.putLong(base + i, 0);
+            }
+            index.putInt(slot * Integer.BYTES, record + 1);
+            setCount(count + 1);
+            writeId(record, key);
+            dueChanged.set(record);
+        }
+        write(record, entry, key.uuid);
+    }
+
+    /**
+     * Delete an entry, if it exists. It is not saved to disk until the next {@link #flush()}.
+     *
+     * @param id the ID of the entry
+     */
+    public synchronized void delete(String id) throws IOException {
+        int slot = findSlot(Key.of(id));
+        int value = index.getInt(slot * Integer.BYTES);
+        if (value == 0) {
+            return;
+        }
+        markDirty();
+        int record = value - 1;
+        for (int stringField : stringFields(record)) {
+            freeString(base(record) + stringField);
+        }
+        removeSlot(slot);
+        // Keep the records dense, by moving the last one into the gap
+        int last = count - 1;
+        if (record != last) {
+            int lastSlot = hash(last) & indexMask;
+            while (index.getInt(lastSlot * Integer.BYTES) != last + 1) {
+                lastSlot = (lastSlot + 1) & indexMask;
+            }
+            copyRecord(last, record);
+            index.putInt(lastSlot * Integer.BYTES, record + 1);
+            dueChanged.set(record);
+        }
+        // The last record's entry in the sorted file is dropped as out of range
+        setCount(last);
+    }
+
+    /**
+     * Force all changes to disk.
+     */
+    public synchronized void flush() throws IOException {
+        if (clean) {
+            return;
+        }
+        if (!dueChanged.isEmpty()) {
+            due.putInt(DUE_VALID_OFFSET, 0);
+        }
+        records.force();
+        names.force();
+        index.force();
+        due.force();
+        records.put(CLEAN_OFFSET, (byte) 1);
+        records.force(0, HEADER_SIZE);
+        clean = true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // Leave the sorted file valid, so the next open doesn't have to rebuild it
+        mergeDueChanges();
+        flush();
+        closeChannels();
+    }
+
+    private void closeChannels() throws IOException {
+        try (recordsChannel; namesChannel; indexChannel; dueChannel) {
+            // Just closing them
+        }
+    }
+
+    // Records
+
+    private static int base(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    private int recordCapacity() {
+        return (records.capacity() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    private void ensureRecordCapacity(int needed) throws IOException {
+        int capacity = recordCapacity();
+        if (needed > capacity) {
+            records = map(recordsChannel, HEADER_SIZE + (long) Math.max(needed, capacity * 2) * RECORD_SIZE);
+        }
+    }
+
+    private void setCount(int count) {
+        this.count = count;
+        records.putInt(COUNT_OFFSET, count);
+    }
+
+    private void markDirty() {
+        if (clean) {
+            // This must reach the disk before any other change does
+            records.put(CLEAN_OFFSET, (byte) 0);
+            records.force(0, HEADER_SIZE);
+            clean = false;
+        }
+    }
+
+    private void copyRecord(int from, int to) {
+        int fromBase = base(from);
+        int toBase = base(to);
+        for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+            records.putLong(toBase + i, records.getLong(fromBase + i));
+        }
+    }
+
+    private int[] stringFields(int record) {
+        int base = base(record);
+        int flags = records.get(base + FLAGS);
+        var fields = (flags & TYPE_MASK) == TYPE_CRON ? CRON_STRINGS : NO_STRINGS;
+        int idFields = (flags & FLAG_UUID_ID) == 0 ? 1 : 0;
+        var all = new int[1 + idFields + fields.length];
+        all[0] = NAME;
+        if (idFields == 1) {
+            all[1] = ID;
+        }
+        System.arraycopy(fields, 0, all, 1 + idFields, fields.length);
+        return all;
+    }
+
+    private void writeId(int record, Key key) throws IOException {
+        int base = base(record);
+        if (key.uuid) {
+            records.putLong(base + ID, key.most);
+            records.putLong(base + ID + Long.BYTES, key.least);
+        } else {
+            writeString(base + ID, key.bytes);
+        }
+    }
+
+    private void write(int record, TaskEntry entry, boolean uuidId) throws IOException {
+        int base = base(record);
+        int type;
+        Optional<Instant> stopTime = Optional.empty();
+        if (entry instanceof OneTimeTaskEntry) {
+            type = TYPE_ONE_TIME;
+        } else if (entry instanceof CronTaskEntry cron) {
+            type = TYPE_CRON;
+            stopTime = cron.stopTime();
+        } else if (entry instanceof IntervalTaskEntry interval) {
+            type = TYPE_INTERVAL;
+            stopTime = interval.stopTime();
+        } else {
+            throw new IllegalStateException("Unknown task entry type " + entry.getClass());
+        }
+        int oldFlags = records.get(base + FLAGS);
+        // Free the strings the new entry won't re-use
+        if ((oldFlags & TYPE_MASK) == TYPE_CRON && type != TYPE_CRON) {
+            for (int field : CRON_STRINGS) {
+                freeString(base + field);
+            }
+        }
+        writeString(base + NAME, entry.name().getBytes(StandardCharsets.UTF_8));
+        writeInstant(base + LAST_OCCURRENCE, entry.lastOccurrence());
+        Instant nextOccurrence;
+        try {
+            nextOccurrence = entry.nextOccurrence();
+        } catch (IllegalStateException e) {
+            // It never occurs again
+            nextOccurrence = Instant.MAX;
+        }
+        if (compareInstant(base + NEXT_OCCURRENCE, nextOccurrence) != 0) {
+            dueChanged.set(record);
+        }
+        writeInstant(base + NEXT_OCCURRENCE, nextOccurrence);
+        writeInstant(base + STOP_TIME, stopTime.orElse(Instant.EPOCH));
+        if (entry instanceof CronTaskEntry cron) {
+            if (type != (oldFlags & TYPE_MASK)) {
+                // Clear the references left behind by a different type
+                records.putLong(base + CRON_ZONE, 0);
+                records.putLong(base + CRON_EXPRESSION, 0);
+            }
+            writeString(base + CRON_ZONE, cron.timeZone().getId().getBytes(StandardCharsets.UTF_8));
+            writeString(base + CRON_EXPRESSION, cron.cron().asString().getBytes(StandardCharsets.UTF_8));
+            writeInstant(base + CRON_EXECUTION_BASE, cron.executionBase());
+        } else if (entry instanceof IntervalTaskEntry interval) {
+            records.putInt(base + INTERVAL_PERIOD, interval.interval().getYears());
+            records.putInt(base + INTERVAL_PERIOD + 4, interval.interval().getMonths());
+            records.putInt(base + INTERVAL_PERIOD + 8, interval.interval().getDays());
+        }
+        int flags = type;
+        if (uuidId) {
+            flags |= FLAG_UUID_ID;
+        }
+        if (stopTime.isPresent()) {
+            flags |= FLAG_STOP_TIME;
+        }
+        records.put(base + FLAGS, (byte) flags);
+    }
+
+    private TaskEntry read(int record) {
+        int base = base(record);
+        int flags = records.get(base + FLAGS);
+        String id = (flags & FLAG_UUID_ID) != 0
+            ? new UUID(records.getLong(base + ID), records.getLong(base + ID + Long.BYTES)).toString()
+            : readString(base + ID);
+        var name = readString(base + NAME);
+        var lastOccurrence = readInstant(base + LAST_OCCURRENCE);
+        Optional<Instant> stopTime = (flags & FLAG_STOP_TIME) != 0
+            ? Optional.of(readInstant(base + STOP_TIME))
+            : Optional.empty();
+        return switch (flags & TYPE_MASK) {
+            case TYPE_ONE_TIME -> new OneTimeTaskEntry(id, name, lastOccurrence, readInstant(base + NEXT_OCCURRENCE));
+            case TYPE_CRON -> new CronTaskEntry(
+                id, name,
+                zones.computeIfAbsent(readString(base + CRON_ZONE), ZoneId::of),
+                crons.computeIfAbsent(readString(base + CRON_EXPRESSION), CronConstants.PARSER::parse),
+                stopTime,
+                lastOccurrence,
+                readInstant(base + CRON_EXECUTION_BASE)
+            );
+            case TYPE_INTERVAL -> new IntervalTaskEntry(
+                id, name,
+                Period.of(
+                    records.getInt(base + INTERVAL_PERIOD),
+                    records.getInt(base + INTERVAL_PERIOD + 4),
+                    records.getInt(base + INTERVAL_PERIOD + 8)
+                ),
+                stopTime,
+                lastOccurrence
+            );
+            default -> throw new IllegalStateException("Unknown task entry type " + (flags & TYPE_MASK));
+        };
+    }
+
+    private void writeInstant(int offset, Instant instant) {
+        records.putLong(offset, instant.getEpochSecond());
+        records.putInt(offset + Long.BYTES, instant.getNano());
+    }
+
+    private int compareInstant(int offset, Instant instant) {
+        int result = Long.compare(records.getLong(offset), instant.getEpochSecond());
+        return result != 0 ? result : Integer.compare(records.getInt(offset + Long.BYTES), instant.getNano());
+    }
+
+    private Instant readInstant(int offset) {
+        return Instant.ofEpochSecond(records.getLong(offset), records.getInt(offset + Long.BYTES));
+    }
+
+    // Next occurrence file
+
+    private static long dueCapacityBytes(int entries) {
+        // Room for a scratch copy of every entry, for merging
+        return DUE_HEADER_SIZE + 2L * entries * DUE_ENTRY_SIZE;
+    }
+
+    private static int dueBase(int position) {
+        return DUE_HEADER_SIZE + position * DUE_ENTRY_SIZE;
+    }
+
+    private int compareDue(int dueOffset, Instant instant) {
+        int result = Long.compare(due.getLong(dueOffset), instant.getEpochSecond());
+        return result != 0 ? result : Integer.compare(due.getInt(dueOffset + Long.BYTES), instant.getNano());
+    }
+
+    private int compareDue(int a, int b) {
+        int result = Long.compare(due.getLong(a), due.getLong(b));
+        return result != 0 ? result : Integer.compare(due.getInt(a + Long.BYTES), due.getInt(b + Long.BYTES));
+    }
+
+    private void copyDue(int from, int to) {
+        due.putLong(to, due.getLong(from));
+        due.putLong(to + Long.BYTES, due.getLong(from + Long.BYTES));
+    }
+
+    /**
+     * Merge the changed next occurrences into the sorted file, in one pass over it.
+     */
+    private void mergeDueChanges() throws IOException {
+        if (dueChanged.nextSetBit(0) == -1) {
+            return;
+        }
+        markDirty();
+        due.putInt(DUE_VALID_OFFSET, 0);
+        // Drop the entries of changed and removed records, keeping the rest in order
+        int oldCount = due.getInt(DUE_COUNT_OFFSET);
+        if (oldCount < 0 || oldCount > (due.capacity() - DUE_HEADER_SIZE) / DUE_ENTRY_SIZE) {
+            oldCount = 0;
+        }
+        int kept = 0;
+        for (int i = 0; i < oldCount; i++) {
+            int record = due.getInt(dueBase(i) + Long.BYTES + Integer.BYTES);
+            if (record >= 0 && record < count && !dueChanged.get(record)) {
+                copyDue(dueBase(i), dueBase(kept));
+                kept++;
+            }
+        }
+        int changed = dueChanged.get(0, count).cardinality();
+        if (dueCapacityBytes(kept + changed) > due.capacity()) {
+            due = map(dueChannel, Math.max(dueCapacityBytes(kept + changed), due.capacity() * 2L));
+        }
+        // Sort the changed entries in the scratch space past where the merged entries end
+        int scratch = kept + changed;
+        int position = scratch;
+        for (int record = dueChanged.nextSetBit(0); record >= 0 && record < count;
+             record = dueChanged.nextSetBit(record + 1)) {
+            int dueOffset = dueBase(position++);
+            due.putLong(dueOffset, records.getLong(base(record) + NEXT_OCCURRENCE));
+            due.putInt(dueOffset + Long.BYTES, records.getInt(base(record) + NEXT_OCCURRENCE + Long.BYTES));
+            due.putInt(dueOffset + Long.BYTES + Integer.BYTES, record);
+        }
+        heapSortDue(scratch, changed);
+        // Merge from the back, so nothing is overwritten before it's read
+        int i = kept - 1;
+        int j = changed - 1;
+        for (int to = kept + changed - 1; j >= 0; to--) {
+            if (i >= 0 && compareDue(dueBase(i), dueBase(scratch + j)) > 0) {
+                copyDue(dueBase(i--), dueBase(to));
+            } else {
+                copyDue(dueBase(scratch + j--), dueBase(to));
+            }
+        }
+        dueChanged.clear();
+        due.putInt(DUE_COUNT_OFFSET, count);
+        due.putInt(DUE_VALID_OFFSET, 1);
+    }
+
+    private void heapSortDue(int start, int length) {
+        for (int i = length / 2 - 1; i >= 0; i--) {
+            siftDownDue(start, i, length);
+        }
+        for (int end = length - 1; end > 0; end--) {
+            swapDue(dueBase(start), dueBase(start + end));
+            siftDownDue(start, 0, end);
+        }
+    }
+
+    private void siftDownDue(int start, int node, int length) {
+        while (true) {
+            int largest = node;
+            for (int child = 2 * node + 1; child <= 2 * node + 2 && child < length; child++) {
+                if (compareDue(dueBase(start + child), dueBase(start + largest)) > 0) {
+                    largest = child;
+                }
+            }
+            if (largest == node) {
+                return;
+            }
+            swapDue(dueBase(start + node), dueBase(start + largest));
+            node = largest;
+        }
+    }
+
+    private void swapDue(int a, int b) {
+        long seconds = due.getLong(a);
+        long rest = due.getLong(a + Long.BYTES);
+        copyDue(b, a);
+        due.putLong(b, seconds);
+        due.putLong(b + Long.BYTES, rest);
+    }
+
+    // Side table
+
+    private static int sizeClass(int length) {
+        return Math.max(0, Integer.SIZE - Integer.numberOfLeadingZeros(length - 1) - 4);
+    }
+
+    private static int blockSize(int length) {
+        return MIN_BLOCK_SIZE << sizeClass(length);
+    }
+
+    private String readString(int refOffset) {
+        int offset = records.getInt(refOffset);
+        int length = records.getInt(refOffset + Integer.BYTES);
+        var bytes = new byte[length];
+        names.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Point a string reference at the given bytes, keeping its block if it already holds them.
+     */
+    private void writeString(int refOffset, byte[] bytes) throws IOException {
+        int offset = records.getInt(refOffset);
+        int length = records.getInt(refOffset + Integer.BYTES);
+        if (length == bytes.length && storedEquals(offset, bytes)) {
+            return;
+        }
+        if (length != 0 && sizeClass(length) == sizeClass(bytes.length)) {
+            // Same block size, write over it
+            names.put(offset, bytes);
+            records.putInt(refOffset + Integer.BYTES, bytes.length);
+            return;
+        }
+        freeString(refOffset);
+        int newOffset = bytes.length == 0 ? 0 : allocate(bytes.length);
+        names.put(newOffset, bytes);
+        records.putInt(refOffset, newOffset);
+        records.putInt(refOffset + Integer.BYTES, bytes.length);
+    }
+
+    private boolean storedEquals(int offset, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (names.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int allocate(int length) throws IOException {
+        int sizeClass = sizeClass(length);
+        int headOffset = FREE_LISTS_OFFSET + sizeClass * Integer.BYTES;
+        int head = names.getInt(headOffset);
+        if (head != 0) {
+            names.putInt(headOffset, names.getInt(head));
+            return head;
+        }
+        int blockSize = MIN_BLOCK_SIZE << sizeClass;
+        int end = names.getInt(NAMES_END_OFFSET);
+        long newEnd = (long) end + blockSize;
+        if (newEnd > names.capacity()) {
+            names = map(namesChannel, Math.max(newEnd, names.capacity() * 2L));
+        }
+        names.putInt(NAMES_END_OFFSET, (int) newEnd);
+        return end;
+    }
+
+    private void freeString(int refOffset) {
+        int length = records.getInt(refOffset + Integer.BYTES);
+        if (length == 0) {
+            return;
+        }
+        int offset = records.getInt(refOffset);
+        int headOffset = FREE_LISTS_OFFSET + sizeClass(length) * Integer.BYTES;
+        names.putInt(offset, names.getInt(headOffset));
+        names.putInt(headOffset, offset);
+        records.putLong(refOffset, 0);
+    }
+
+    // Index
+
+    private static int minIndexCapacity(int count) {
+        // Keep the load factor at or under a half, so probe sequences stay short
+        return Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, count) * 2 - 1) * 2);
+    }
+
+    private static int mix(long hash) {
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private int hash(int record) {
+        int base = base(record);
+        if ((records.get(base + FLAGS) & FLAG_UUID_ID) != 0) {
+            return mix(records.getLong(base + ID) * 31 + records.getLong(base + ID + Long.BYTES));
+        }
+        int offset = records.getInt(base + ID);
+        int length = records.getInt(base + ID + Integer.BYTES);
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + names.get(offset + i);
+        }
+        return mix(hash);
+    }
+
+    private boolean matches(int record, Key key) {
+        int base = base(record);
+        boolean uuid = (records.get(base + FLAGS) & FLAG_UUID_ID) != 0;
+        if (uuid != key.uuid) {
+            return false;
+        }
+        if (uuid) {
+            return records.getLong(base + ID) == key.most
+                && records.getLong(base + ID + Long.BYTES) == key.least;
+        }
+        return records.getInt(base + ID + Integer.BYTES) == key.bytes.length
+            && storedEquals(records.getInt(base + ID), key.bytes);
+    }
+
+    /**
+     * {@return the slot holding the key, or the empty slot it would go in}
+     */
+    private int findSlot(Key key) {
+        int slot = key.hash & indexMask;
+        while (true) {
+            int value = index.getInt(slot * Integer.BYTES);
+            if (value == 0 || matches(value - 1, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+    }
+
+    private void removeSlot(int slot) {
+        // Shift later entries of the probe sequence back, so lookups don't stop at the gap
+        int gap = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & indexMask;
+            int value = index.getInt(next * Integer.BYTES);
+            if (value == 0) {
+                break;
+            }
+            int home = hash(value - 1) & indexMask;
+            boolean movable = gap <= next ? (home <= gap || home > next) : (home <= gap && home > next);
+            if (movable) {
+                index.putInt(gap * Integer.BYTES, value);
+                gap = next;
+            }
+        }
+        index.putInt(gap * Integer.BYTES, 0);
+    }
+
+    /**
+     * Rebuild the index from the records.
+     *
+     * @return the records that are duplicates of earlier ones, and were left out
+     */
+    private List<Integer> rebuildIndex(int capacity) throws IOException {
+        index = map(indexChannel, Math.max(indexChannel.size(), (long) capacity * Integer.BYTES));
+        // Use the whole mapping, in case the file was already larger
+        indexMask = Integer.highestOneBit(index.capacity() / Integer.BYTES) - 1;
+        for (int i = 0; i < index.capacity(); i += Long.BYTES) {
+            index.putLong(i, 0);
+        }
+        var duplicates = new ArrayList<Integer>();
+        for (int record = 0; record < count; record++) {
+            int slot = hash(record) & indexMask;
+            while (true) {
+                int value = index.getInt(slot * Integer.BYTES);
+                if (value == 0) {
+                    index.putInt(slot * Integer.BYTES, record + 1);
+                    break;
+                }
+                if (sameId(value - 1, record)) {
+                    duplicates.add(record);
+                    break;
+                }
+                slot = (slot + 1) & indexMask;
+            }
+        }
+        return duplicates;
+    }
+
+    private boolean sameId(int a, int b) {
+        int baseA = base(a);
+        int baseB = base(b);
+        int uuidA = records.get(baseA + FLAGS) & FLAG_UUID_ID;
+        if (uuidA != (records.get(baseB + FLAGS) & FLAG_UUID_ID)) {
+            return false;
+        }
+        if (uuidA != 0) {
+            return records.getLong(baseA + ID) == records.getLong(baseB + ID)
+                && records.getLong(baseA + ID + Long.BYTES) == records.getLong(baseB + ID + Long.BYTES);
+        }
+        var idB = new byte[records.getInt(baseB + ID + Integer.BYTES)];
+        names.get(records.getInt(baseB + ID), idB);
+        return records.getInt(baseA + ID + Integer.BYTES) == idB.length
+            && storedEquals(records.getInt(baseA + ID), idB);
+    }
+
+    // Recovery
+
+    private void recover() throws IOException {
+        LOGGER.warn(() -> "Task store was not closed cleanly, checking its " + count + " entries");
+        int end = Math.max(NAMES_HEADER_SIZE, Math.min(names.getInt(NAMES_END_OFFSET), names.capacity()));
+        names.putInt(NAMES_END_OFFSET, end);
+        var valid = new boolean[count];
+        for (int record = 0; record < count; record++) {
+            valid[record] = isWellFormed(record, end);
+        }
+        // Records may only share a block if they were torn, so drop the later one
+        var blocks = new ArrayList<long[]>();
+        for (int record = 0; record < count; record++) {
+            if (valid[record]) {
+                for (int field : stringFields(record)) {
+                    int length = records.getInt(base(record) + field + Integer.BYTES);
+                    if (length > 0) {
+                        int offset = records.getInt(base(record) + field);
+                        blocks.add(new long[] {offset, blockSize(length), record});
+                    }
+                }
+            }
+        }
+        blocks.sort(Comparator.comparingLong(block -> block[0]));
+        long usedEnd = 0;
+        for (long[] block : blocks) {
+            if (block[0] < usedEnd) {
+                valid[(int) block[2]] = false;
+            } else {
+                usedEnd = block[0] + block[1];
+            }
+        }
+        compactRecords(valid);
+        var duplicates = rebuildIndex(minIndexCapacity(count));
+        if (!duplicates.isEmpty()) {
+            valid = new boolean[count];
+            Arrays.fill(valid, true);
+            for (int duplicate : duplicates) {
+                valid[duplicate] = false;
+            }
+            compactRecords(valid);
+            rebuildIndex(minIndexCapacity(count));
+        }
+        rebuildFreeLists(end);
+        // Records were moved, so every entry of the sorted file may be wrong
+        due.putInt(DUE_COUNT_OFFSET, 0);
+        dueChanged.clear();
+        dueChanged.set(0, count);
+        mergeDueChanges();
+        flush();
+        LOGGER.info(() -> "Task store recovered with " + count + " entries");
+    }
+
+    private boolean isWellFormed(int record, int namesEnd) {
+        int base = base(record);
+        int flags = records.get(base + FLAGS);
+        if ((flags & TYPE_MASK) > TYPE_INTERVAL || (flags & ~(TYPE_MASK | FLAG_UUID_ID | FLAG_STOP_TIME)) != 0) {
+            return false;
+        }
+        for (int field : stringFields(record)) {
+            int offset = records.getInt(base + field);
+            int length = records.getInt(base + field + Integer.BYTES);
+            if (length < 0 || (length > 0 && (offset < NAMES_HEADER_SIZE
+                || (long) offset + blockSize(length) > namesEnd))) {
+                return false;
+            }
+        }
+        try {
+            read(record);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void compactRecords(boolean[] valid) {
+        int kept = 0;
+        for (int record = 0; record < valid.length; record++) {
+            if (valid[record]) {
+                if (record != kept) {
+                    copyRecord(record, kept);
+                }
+                kept++;
+            }
+        }
+        if (kept != valid.length) {
+            int dropped = valid.length - kept;
+            LOGGER.warn(() -> "Dropped " + dropped + " damaged task store entries");
+        }
+        setCount(kept);
+    }
+
+    private void rebuildFreeLists(int end) {
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            names.putInt(FREE_LISTS_OFFSET + i * Integer.BYTES, 0);
+        }
+        var used = new ArrayList<long[]>();
+        for (int record = 0; record < count; record++) {
+            for (int field : stringFields(record)) {
+                int length = records.getInt(base(record) + field + Integer.BYTES);
+                if (length > 0) {
+                    used.add(new long[] {records.getInt(base(record) + field), blockSize(length)});
+                }
+            }
+        }
+        used.sort(Comparator.comparingLong(block -> block[0]));
+        long position = NAMES_HEADER_SIZE;
+        for (long[] block : used) {
+            freeRange(position, block[0]);
+            position = block[0] + block[1];
+        }
+        freeRange(position, end);
+    }
+
+    private void freeRange(long from, long to) {
+        while (to - from >= MIN_BLOCK_SIZE) {
+            int sizeClass = Math.min(SIZE_CLASSES - 1, sizeClass(Integer.highestOneBit((int) (to - from))));
+            int blockSize = MIN_BLOCK_SIZE << sizeClass;
+            int headOffset = FREE_LISTS_OFFSET + sizeClass * Integer.BYTES;
+            names.putInt((int) from, names.getInt(headOffset));
+            names.putInt(headOffset, (int) from);
+            from += blockSize;
+        }
+    }
+
+    /**
+     * An ID, in the form it is stored in.
+     */
+    private static final class Key {
+        static Key of(String id) {
+            var uuid = TaskIds.asCanonicalUuid(id);
+            if (uuid != null) {
+                long most = uuid.getMostSignificantBits();
+                long least = uuid.getLeastSignificantBits();
+                return new Key(true, most, least, null, mix(most * 31 + least));
+            }
+            var bytes = id.getBytes(StandardCharsets.UTF_8);
+            int hash = 1;
+            for (byte b : bytes) {
+                hash = 31 * hash + b;
+            }
+            return new Key(false, 0, 0, bytes, mix(hash));
+        }
+
+        private final boolean uuid;
+        private final long most;
+        private final long least;
+        private final byte[] bytes;
+        private final int hash;
+
+        private Key(boolean uuid, long most, long least, byte[] bytes, int hash) {
+            this.uuid = uuid;
+            this.most = most;
+            this.least = least;
+            this.bytes = bytes;
+            this.hash = hash;
+        }
+    }
+}
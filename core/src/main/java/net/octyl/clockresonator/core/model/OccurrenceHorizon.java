@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.octyl.clockresonator.core.util.ConflatingSink;
+import net.octyl.clockresonator.core.util.CronExecutionCache;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the occurrences of every entry within a rolling horizon, so they can be looked up instead of computed.
+ *
+ * <p>
+ * The occurrences are computed in the background, when entries change and as time moves the horizon forward. Each
+ * step only computes what is new: the occurrences of changed entries, or those between the old and new end of the
+ * horizon. Computing them also caches each entry's {@linkplain TaskEntry#nextOccurrence() next occurrence}, so other
+ * lookups don't have to.
+ * </p>
+ *
+ * <p>
+ * An entry's occurrences start at its next occurrence, and continue on its schedule until its stop time. Queries see
+ * a consistent snapshot, which lags changes by up to {@value #CHANGE_DELAY_MILLIS}ms plus the time to compute them.
+ * The end of the horizon is kept a little more than its length ahead of now, so a query for the whole length is
+ * always covered.
+ * </p>
+ *
+ * <p>
+ * This is for questions about every occurrence in a window, such as the daemon's {@code due-within} command. Questions
+ * about each entry's next occurrence, such as due notifications and overdue counts, are answered by
+ * {@link TaskEntryManager}'s due index instead, which is updated along with the entries rather than after them.
+ * </p>
+ */
+@Singleton
+public class OccurrenceHorizon {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final Duration DEFAULT_LENGTH = Duration.ofHours(48);
+    // How far the horizon moves forward at once, as a fraction of its length
+    private static final int REFILLS_PER_LENGTH = 48;
+    // Lets a load or bulk change arrive in full before computing
+    private static final long CHANGE_DELAY_MILLIS = 100;
+
+    // https://github.com/google/dagger/issues/2106
+    // Wrapping the records prevents dagger from observing them and exploding
+    private static final class DaggerHack {
+        // Published after each step, the arrays are never modified afterwards
+        private record Timeline(Instant start, Instant end, long[] times, TaskEntry[] owners) {
+        }
+
+        // The entry's next occurrence after the end of the horizon, or null if there are no more
+        private record Cursor(TaskEntry entry, @Nullable Instant next) {
+        }
+    }
+
+    private final TaskEntryManager manager;
+    // How far ahead of now the end is put, a little more than the length
+    private final Duration lead;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private final ConflatingSink<String, String> changeSink;
+    // Only used on the executor
+    private final Map<String, DaggerHack.Cursor> cursors = new HashMap<>();
+    private volatile DaggerHack.Timeline timeline;
+
+    @Inject
+    public OccurrenceHorizon(TaskEntryManager manager) {
+        this(manager, DEFAULT_LENGTH, Clock.systemUTC());
+    }
+
+    /**
+     * Create a horizon and start following the manager's entries.
+     *
+     * @param manager the manager with the entries
+     * @param length how far ahead of now occurrences are always kept
+     * @param clock the clock to take now from
+     */
+    public OccurrenceHorizon(TaskEntryManager manager, Duration length, Clock clock) {
+        this.manager = manager;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("clock-resonator-horizon-%d")
+            .setDaemon(true)
+            .build());
+        var refillInterval = length.dividedBy(REFILLS_PER_LENGTH);
+        // One refill ahead, so the end doesn't fall behind now plus the length before the next refill, and another in
+        // case that refill is late
+        this.lead = length.plus(refillInterval.multipliedBy(2));
+        var now = clock.instant();
+        this.timeline = new DaggerHack.Timeline(now, now.plus(lead), new long[0], new TaskEntry[0]);
+        this.changeSink = new ConflatingSink<>(
+            this, Duration.ofMillis(CHANGE_DELAY_MILLIS), Integer.MAX_VALUE, executor, id -> id, this::applyChanges
+        );
+        manager.addListener(changes -> {
+            for (TaskEntryChange change : changes) {
+                changeSink.mark(change.id());
+            }
+        });
+        executor.scheduleAtFixedRate(
+            this::refill, refillInterval.toMillis(), refillInterval.toMillis(), TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * {@return the start of the horizon, occurrences before it are not kept}
+     */
+    public Instant getStart() {
+        return timeline.start();
+    }
+
+    /**
+     * {@return the end of the horizon, occurrences after it are not known yet}
+     */
+    public Instant getEnd() {
+        return timeline.end();
+    }
+
+    /**
+     * Find the occurrences in a range. Only the part of the range within the horizon is covered.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the occurrences, in order of time
+     */
+    public List<TaskOccurrence> occurrencesBetween(Instant from, Instant to) {
+        var current = timeline;
+        int start = lowerBound(current.times(), toNanos(from, current.start(), current.end()));
+        int end = lowerBound(current.times(), toNanos(to, current.start(), current.end()));
+        var occurrences = new ArrayList<TaskOccurrence>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            occurrences.add(new TaskOccurrence(current.owners()[i], fromNanos(current.times()[i])));
+        }
+        return occurrences;
+    }
+
+    /**
+     * Find the occurrences from now until some time from now.
+     *
+     * @param within how far ahead to look, at most the length of the horizon
+     * @return the occurrences, in order of time
+     */
+    public List<TaskOccurrence> dueWithin(Duration within) {
+        var now = clock.instant();
+        return occurrencesBetween(now, now.plus(within));
+    }
+
+    private void applyChanges(List<String> ids) {
+        var current = timeline;
+        var added = new ArrayList<TaskOccurrence>();
+        for (String id : ids) {
+            var entry = manager.getEntry(id).orElse(null);
+            var cursor = cursors.get(id);
+            if (cursor != null && cursor.entry() == entry) {
+                continue;
+            }
+            if (entry == null) {
+                cursors.remove(id);
+                continue;
+            }
+            cursors.put(id, collect(entry, first(entry, current.start()), current.end(), added));
+        }
+        publish(current.start(), current.end(), added);
+    }
+
+    private void refill() {
+        try {
+            var current = timeline;
+            var now = clock.instant();
+            var end = now.plus(lead);
+            var added = new ArrayList<TaskOccurrence>();
+            for (var entry : cursors.entrySet()) {
+                var cursor = entry.getValue();
+                if (cursor.next() != null && !cursor.next().isAfter(end)) {
+                    entry.setValue(collect(cursor.entry(), cursor.next(), end, added));
+                }
+            }
+            publish(now.isAfter(current.start()) ? now : current.start(), end, added);
+        } catch (RuntimeException e) {
+            // Don't let it cancel the later refills
+            LOGGER.warn("Failed to refill the occurrence horizon", e);
+        }
+    }
+
+    /**
+     * Merge the new occurrences into the timeline, dropping those that are stale or before the start.
+     */
+    private void publish(Instant start, Instant end, List<TaskOccurrence> added) {
+        var current = timeline;
+        added.sort(Comparator.comparing(TaskOccurrence::time));
+        int capacity = current.times().length + added.size();
+        var times = new long[capacity];
+        var owners = new TaskEntry[capacity];
+        int size = 0;
+        int i = lowerBound(current.times(), toNanos(start, start, end));
+        int j = 0;
+        while (i < current.times().length || j < added.size()) {
+            if (j == added.size() || (i < current.times().length
+                && current.times()[i] <= toNanos(added.get(j).time(), start, end))) {
+                var owner = current.owners()[i];
+                var cursor = cursors.get(owner.id());
+                // Drop the occurrences of replaced or removed entries
+                if (cursor != null && cursor.entry() == owner) {
+                    times[size] = current.times()[i];
+                    owners[size] = owner;
+                    size++;
+                }
+                i++;
+            } else {
+                var occurrence = added.get(j);
+                times[size] = toNanos(occurrence.time(), start, end);
+                owners[size] = occurrence.entry();
+                size++;
+                j++;
+            }
+        }
+        timeline = new DaggerHack.Timeline(start, end, Arrays.copyOf(times, size), Arrays.copyOf(owners, size));
+        int finalSize = size;
+        LOGGER.debug(() -> "Published occurrence horizon, occurrences=" + finalSize + ", added=" + added.size()
+            + ", end=" + end);
+    }
+
+    /**
+     * Collect the occurrences of an entry, from a known occurrence until the end.
+     *
+     * @return the cursor to continue from
+     */
+    private static DaggerHack.Cursor collect(TaskEntry entry, @Nullable Instant from, Instant end,
+                                             List<TaskOccurrence> into) {
+        var stopTime = stopTime(entry).orElse(Instant.MAX);
+        var occurrence = from;
+        while (occurrence != null && !occurrence.isAfter(end)) {
+            if (occurrence.isAfter(stopTime)) {
+                return new DaggerHack.Cursor(entry, null);
+            }
+            into.add(new TaskOccurrence(entry, occurrence));
+            occurrence = following(entry, occurrence);
+        }
+        return new DaggerHack.Cursor(entry, occurrence != null && !occurrence.isAfter(stopTime) ? occurrence : null);
+    }
+
+    /**
+     * {@return the first occurrence of an entry that's not before {@code start}, or null if there is none}
+     */
+    private static @Nullable Instant first(TaskEntry entry, Instant start) {
+        Instant occurrence;
+        try {
+            occurrence = entry.nextOccurrence();
+        } catch (IllegalStateException e) {
+            // It never occurs
+            return null;
+        }
+        if (occurrence.isBefore(start) && entry instanceof CronTaskEntry cron) {
+            // Jump straight there instead of stepping through everything that was missed
+            return CronExecutionCache.executionTime(cron.cron())
+                .nextExecution(start.minusNanos(1).atZone(cron.timeZone()))
+                .map(ZonedDateTime::toInstant)
+                .orElse(null);
+        }
+        while (occurrence != null && occurrence.isBefore(start)) {
+            occurrence = following(entry, occurrence);
+        }
+        return occurrence;
+    }
+
+    private static @Nullable Instant following(TaskEntry entry, Instant occurrence) {
+        if (entry instanceof CronTaskEntry cron) {
+            return CronExecutionCache.executionTime(cron.cron())
+                .nextExecution(occurrence.atZone(cron.timeZone()))
+                .map(ZonedDateTime::toInstant)
+                .orElse(null);
+        } else if (entry instanceof IntervalTaskEntry interval) {
+            var next = occurrence.atZone(ZoneId.systemDefault()).plus(interval.interval()).toInstant();
+            // An empty interval would never get anywhere
+            return next.isAfter(occurrence) ? next : null;
+        }
+        // One-time entries only occur once
+        return null;
+    }
+
+    private static Optional<Instant> stopTime(TaskEntry entry) {
+        if (entry instanceof CronTaskEntry cron) {
+            return cron.stopTime();
+        } else if (entry instanceof IntervalTaskEntry interval) {
+            return interval.stopTime();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Convert an instant to nanoseconds since the epoch, clamped to around the horizon so it can't overflow.
+     */
+    private static long toNanos(Instant instant, Instant start, Instant end) {
+        var min = start.minus(Duration.ofDays(1));
+        var max = end.plus(Duration.ofDays(1));
+        var clamped = instant.isBefore(min) ? min : instant.isAfter(max) ? max : instant;
+        return clamped.getEpochSecond() * 1_000_000_000L + clamped.getNano();
+    }
+
+    private static Instant fromNanos(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), Math.floorMod(nanos, 1_000_000_000L));
+    }
+
+    private static int lowerBound(long[] times, long time) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -16,7 +16,7 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package net.octyl.clockresonator.app.model;
+package net.octyl.clockresonator.core.model;
 
 import java.time.Instant;
 import java.util.Optional;
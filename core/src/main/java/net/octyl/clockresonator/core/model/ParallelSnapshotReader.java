@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Parses a JSON array of task entries on a {@link ForkJoinPool}.
+ *
+ * <p>
+ * The array is split into byte ranges at element boundaries, using a quick scan that only tracks nesting and strings.
+ * Each range is then parsed as its own small array, in parallel, and the results are handed back in file order.
+ * </p>
+ */
+final class ParallelSnapshotReader {
+    // Ranges smaller than this are not worth a task of their own
+    private static final int MIN_RANGE_BYTES = 64 * 1024;
+    // More ranges than threads, so uneven ranges still balance out and the first one is done sooner
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final ObjectReader entryReader;
+    private final ForkJoinPool pool;
+
+    ParallelSnapshotReader(ObjectReader entryReader, ForkJoinPool pool) {
+        this.entryReader = entryReader;
+        this.pool = pool;
+    }
+
+    /**
+     * Parse the entries in {@code json}.
+     *
+     * @param json the snapshot contents
+     * @param rangeConsumer receives the entries of each range, in order
+     */
+    void read(byte[] json, Consumer<List<TaskEntry>> rangeConsumer) throws IOException {
+        int rangeBytes = Math.max(MIN_RANGE_BYTES, json.length / (pool.getParallelism() * RANGES_PER_THREAD));
+        int[] bounds = split(json, rangeBytes);
+        var tasks = new ArrayList<ForkJoinTask<List<TaskEntry>>>(bounds.length / 2);
+        for (int i = 0; i < bounds.length; i += 2) {
+            int start = bounds[i];
+            int end = bounds[i + 1];
+            tasks.add(pool.submit(() -> parse(json, start, end)));
+        }
+        try {
+            for (ForkJoinTask<List<TaskEntry>> task : tasks) {
+                rangeConsumer.accept(task.join());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ForkJoinTask<List<TaskEntry>> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private List<TaskEntry> parse(byte[] json, int start, int end) {
+        // Re-wrap the elements in brackets, so the range is a valid array by itself
+        var range = new byte[end - start + 2];
+        range[0] = '[';
+        System.arraycopy(json, start, range, 1, end - start);
+        range[range.length - 1] = ']';
+        try (MappingIterator<TaskEntry> iterator = entryReader.readValues(range)) {
+            var entries = new ArrayList<TaskEntry>();
+            while (iterator.hasNextValue()) {
+                entries.add(iterator.nextValue());
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Split the elements of a top-level array into ranges of about {@code rangeBytes} each.
+     *
+     * @return pairs of start (inclusive) and end (exclusive) offsets, excluding the separating commas
+     */
+    static int[] split(byte[] json, int rangeBytes) throws IOException {
+        int pos = 0;
+        while (pos < json.length && isWhitespace(json[pos])) {
+            pos++;
+        }
+        if (pos == json.length || json[pos] != '[') {
+            throw new IOException("Expected a JSON array at byte " + pos);
+        }
+        var bounds = new ArrayList<Integer>();
+        int rangeStart = pos + 1;
+        int depth = 0;
+        boolean inString = false;
+        for (; pos < json.length; pos++) {
+            byte b = json[pos];
+            if (inString) {
+                if (b == '\\') {
+                    pos++;
+                } else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (b) {
+                case '"' -> inString = true;
+                case '[', '{' -> depth++;
+                case ']', '}' -> {
+                    depth--;
+                    if (depth == 0) {
+                        bounds.add(rangeStart);
+                        bounds.add(pos);
+                        return bounds.stream().mapToInt(Integer::intValue).toArray();
+                    }
+                }
+                case ',' -> {
+                    if (depth == 1 && pos - rangeStart >= rangeBytes) {
+                        bounds.add(rangeStart);
+                        bounds.add(pos);
+                        rangeStart = pos + 1;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        throw new IOException("Unterminated JSON array");
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
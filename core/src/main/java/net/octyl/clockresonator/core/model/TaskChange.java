@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A change to a single entry, as seen by the {@linkplain TaskEntryManager#changes() change feed}.
+ *
+ * @param sequence the position of the change in the feed, starting from 1 for each manager
+ * @param kind what happened to the entry
+ * @param id the id of the entry
+ * @param removed the entry that was removed or replaced, if any
+ * @param added the entry that was added, if any
+ */
+public record TaskChange(
+    long sequence, Kind kind, String id, @Nullable TaskEntry removed, @Nullable TaskEntry added
+) {
+    public enum Kind {
+        ADDED,
+        UPDATED,
+        REMOVED,
+        ;
+    }
+
+    static TaskChange of(long sequence, TaskEntryChange change) {
+        Kind kind;
+        if (change.removed() == null) {
+            kind = Kind.ADDED;
+        } else if (change.added() == null) {
+            kind = Kind.REMOVED;
+        } else {
+            kind = Kind.UPDATED;
+        }
+        return new TaskChange(sequence, kind, change.id(), change.removed(), change.added());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.concurrent.Queues;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Numbers the changes of a {@link TaskEntryManager}, and hands them to each subscriber's own buffer.
+ *
+ * <p>
+ * Publishing only assigns sequence numbers and queues the changes, subscribers are run on a separate scheduler. The
+ * most recent changes are retained, so a subscriber can resume after the last sequence number it saw.
+ * </p>
+ */
+final class TaskChangeFeed {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final int historySize;
+    private final Scheduler scheduler;
+    private final List<FluxSink<TaskChange>> subscribers = new CopyOnWriteArrayList<>();
+    // Guarded by this
+    private final ArrayDeque<TaskChange> history = new ArrayDeque<>();
+    private long sequence;
+
+    TaskChangeFeed(int historySize, Scheduler scheduler) {
+        this.historySize = historySize;
+        this.scheduler = scheduler;
+    }
+
+    synchronized long getSequence() {
+        return sequence;
+    }
+
+    // Must be called in order, e.g. with the manager locked
+    void publish(List<TaskEntryChange> changes) {
+        var sequenced = new ArrayList<TaskChange>(changes.size());
+        synchronized (this) {
+            for (TaskEntryChange change : changes) {
+                var taskChange = TaskChange.of(++sequence, change);
+                sequenced.add(taskChange);
+                history.addLast(taskChange);
+                if (history.size() > historySize) {
+                    history.removeFirst();
+                }
+            }
+            for (FluxSink<TaskChange> subscriber : subscribers) {
+                for (TaskChange taskChange : sequenced) {
+                    subscriber.next(taskChange);
+                }
+            }
+        }
+    }
+
+    /**
+     * Follow the changes after a sequence number.
+     *
+     * @param after the sequence number to follow from, or empty for the latest at subscription
+     * @param bufferSize how many changes each subscriber can fall behind by
+     * @param overflow what to do when a subscriber falls further behind
+     * @return the changes
+     */
+    Flux<TaskChange> follow(OptionalLong after, int bufferSize, BufferOverflowStrategy overflow) {
+        return Flux.<TaskChange>create(sink -> {
+            sink.onDispose(() -> {
+                synchronized (this) {
+                    subscribers.remove(sink);
+                }
+            });
+            synchronized (this) {
+                long from = after.orElse(sequence);
+                long oldest = history.isEmpty() ? sequence + 1 : history.getFirst().sequence();
+                if (from > sequence) {
+                    sink.error(new IllegalArgumentException(
+                        "Sequence " + from + " has not happened yet, the latest is " + sequence
+                    ));
+                    return;
+                }
+                if (from + 1 < oldest) {
+                    sink.error(new IllegalStateException(
+                        "Changes after " + from + " are no longer retained, the oldest is " + oldest
+                    ));
+                    return;
+                }
+                for (TaskChange taskChange : history) {
+                    if (taskChange.sequence() > from) {
+                        sink.next(taskChange);
+                    }
+                }
+                if (!sink.isCancelled()) {
+                    subscribers.add(sink);
+                }
+            }
+        })
+            .onBackpressureBuffer(
+                bufferSize,
+                dropped -> LOGGER.debug(() -> "Change feed subscriber overflowed at " + dropped.sequence()),
+                overflow
+            )
+            // Keeps subscribers off the thread that made the change
+            .publishOn(scheduler, Queues.XS_BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A change to a single entry in a {@link TaskEntryManager}.
+ *
+ * @param id the id of the entry
+ * @param removed the entry that was removed or replaced, if any
+ * @param added the entry that was added, if any
+ */
+public record TaskEntryChange(String id, @Nullable TaskEntry removed, @Nullable TaskEntry added) {
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import java.util.List;
+
+/**
+ * Listens for changes to the entries in a {@link TaskEntryManager}.
+ */
+@FunctionalInterface
+public interface TaskEntryListener {
+    /**
+     * Called with the changes from a single operation, on the thread that made them. A batch is delivered as one call.
+     *
+     * <p>
+     * Calls are made while the manager is locked, so they are never concurrent and arrive in order. Implementations
+     * should hand off anything slow.
+     * </p>
+     *
+     * @param changes the changes, in the order they were made
+     */
+    void onChanges(List<TaskEntryChange> changes);
+}
@@ -0,0 +1,596 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import dev.dirs.ProjectDirectories;
+import net.octyl.clockresonator.core.persist.PersistenceService;
+import net.octyl.clockresonator.core.util.Completables;
+import net.octyl.clockresonator.core.util.ConflatingSink;
+import net.octyl.clockresonator.core.util.OrderStatisticTree;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Manages saving and loading task entries.
+ *
+ * <p>
+ * Changes are saved to a {@link TaskStore}, by default one appending them to a journal rather than rewriting every
+ * entry. They are reported to {@link TaskEntryListener listeners} on the thread that made them. Failed saves are
+ * tried again, and reported to {@linkplain #addSaveFailureListener(Consumer) save failure listeners}.
+ * </p>
+ */
+@Singleton
+public class TaskEntryManager {
+    /**
+     * A set of changes applied together by {@link #batch(Consumer)}.
+     */
+    public interface Transaction {
+        void put(TaskEntry entry);
+
+        void delete(String id);
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    // https://github.com/google/dagger/issues/2106
+    // Wrapping the records prevents dagger from observing them and exploding
+    private static final class DaggerHack {
+        // Orders the due index by time, then ID. The entry is null for the probes used to search it.
+        private record Due(Instant time, String id, @Nullable TaskEntry entry) {
+            static final Comparator<Due> ORDER = Comparator.comparing(Due::time).thenComparing(Due::id);
+
+            static Due probe(Instant time) {
+                // No ID is less than the empty one, so this is before everything due at the same time
+                return new Due(time, "", null);
+            }
+        }
+    }
+
+    // Changes wait at most this long to be saved together, unless this many entries change first. It only gathers
+    // bursts of changes, the store's persistence service decides when the saved changes are committed.
+    private static final Duration SAVE_BATCH_DELAY = Duration.ofMillis(100L);
+    private static final int SAVE_BATCH_SIZE = 1024;
+    // Failed saves are tried again after this long
+    private static final Duration SAVE_RETRY_DELAY = Duration.ofSeconds(5L);
+    // Selects the TaskSnapshotFormat of the injected manager
+    private static final String SNAPSHOT_FORMAT_PROPERTY = "clockresonator.snapshotFormat";
+    // The change feed keeps this many changes to resume from, and lets subscribers fall this far behind by default.
+    // The history is larger, so a subscriber that overflowed can still resume from where it was.
+    private static final int CHANGE_HISTORY_SIZE = 8192;
+    private static final int CHANGE_BUFFER_SIZE = 4096;
+
+    private final TaskStore store;
+    // Stores take one call at a time, so saves wait for loading to finish
+    private final Object storeLock = new Object();
+    private final Map<String, TaskEntry> entries = new ConcurrentHashMap<>();
+    private final List<TaskEntryListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<? super Throwable>> saveFailureListeners = new CopyOnWriteArrayList<>();
+    private final TaskChangeFeed changeFeed = new TaskChangeFeed(CHANGE_HISTORY_SIZE, Schedulers.boundedElastic());
+    // Entries ordered by next occurrence, guarded by this
+    private final OrderStatisticTree<DaggerHack.Due> dueIndex = new OrderStatisticTree<>(DaggerHack.Due.ORDER);
+    private final Map<String, DaggerHack.Due> dueById = new HashMap<>();
+    // Holds the IDs of changed entries, their records are made when saving
+    private final ConflatingSink<String, TaskJournalRecord> saveSink;
+    // Collects changes while in a batch, so they are reported and saved together. Guarded by this.
+    private List<TaskEntryChange> batchChanges;
+    // The IDs changed since loading started, which loaded records must not overwrite. Guarded by this.
+    private @Nullable Set<String> changedWhileLoading;
+    // Save statistics, guarded by this
+    private long saveCount;
+    private Duration totalSaveTime = Duration.ZERO;
+    private Duration lastSaveTime = Duration.ZERO;
+    private long bytesSerialized;
+    private long lastBytesSerialized;
+    // Whether the last save failed, so only the first of a run of failures is reported. Guarded by this.
+    private boolean saveFailing;
+
+    @Inject
+    public TaskEntryManager(JsonMapper jsonMapper, ProjectDirectories dirs, PersistenceService persistence) {
+        this(jsonMapper, Path.of(dirs.dataDir, "tasks.json"), TaskSnapshotFormat.valueOf(
+            System.getProperty(SNAPSHOT_FORMAT_PROPERTY, TaskSnapshotFormat.JSON.name()).toUpperCase(Locale.ROOT)
+        ), persistence);
+    }
+
+    /**
+     * Create a manager saving JSON to a specific file, e.g. when embedding it elsewhere.
+     *
+     * @param jsonMapper the mapper for entries
+     * @param tasksFile the file to save entries to
+     */
+    public TaskEntryManager(JsonMapper jsonMapper, Path tasksFile) {
+        this(jsonMapper, tasksFile, TaskSnapshotFormat.JSON, new PersistenceService());
+    }
+
+    /**
+     * Create a manager saving to a specific file, e.g. when embedding it elsewhere.
+     *
+     * @param jsonMapper the mapper for entries
+     * @param tasksFile the file to save entries to, see {@link TaskSnapshotFormat} for where each format saves
+     * @param snapshotFormat the format to save snapshots in
+     * @param persistence the service writing the files
+     */
+    public TaskEntryManager(JsonMapper jsonMapper, Path tasksFile, TaskSnapshotFormat snapshotFormat,
+                            PersistenceService persistence) {
+        this(new TaskJournal(jsonMapper, tasksFile, snapshotFormat, persistence));
+    }
+
+    /**
+     * Create a manager saving to a custom store.
+     *
+     * @param store the store to save entries to
+     */
+    public TaskEntryManager(TaskStore store) {
+        this.store = store;
+        this.saveSink = new ConflatingSink<>(
+            this, SAVE_BATCH_DELAY, SAVE_BATCH_SIZE, task -> Schedulers.boundedElastic().schedule(task),
+            id -> {
+                var entry = entries.get(id);
+                return entry != null ? new TaskJournalRecord.Put(entry) : new TaskJournalRecord.Delete(id);
+            },
+            this::save
+        );
+        store.setWriteFailureHandler(this::onWriteFailure);
+    }
+
+    private void save(List<TaskJournalRecord> records) {
+        var stopwatch = Stopwatch.createStarted();
+        long serialized;
+        try {
+            synchronized (storeLock) {
+                serialized = store.save(records, () -> List.copyOf(entries.values()));
+            }
+        } catch (IOException | RuntimeException e) {
+            // The sink has already let go of the IDs, so hand them back
+            saveSink.retry(records.stream().map(TaskJournalRecord::id).toList(), SAVE_RETRY_DELAY);
+            reportSaveFailure(e);
+            return;
+        }
+        var elapsed = stopwatch.elapsed();
+        synchronized (this) {
+            saveFailing = false;
+            saveCount++;
+            totalSaveTime = totalSaveTime.plus(elapsed);
+            lastSaveTime = elapsed;
+            bytesSerialized += serialized;
+            lastBytesSerialized = serialized;
+        }
+        LOGGER.debug(() -> "Saved " + records.size() + " task changes in " + elapsed.toMillis() + "ms, "
+            + serialized + " bytes serialized");
+    }
+
+    private void onWriteFailure(Throwable error) {
+        // Nothing may change for a while, so save again to have the store repair its files
+        saveSink.retry(List.of(), SAVE_RETRY_DELAY);
+        reportSaveFailure(error);
+    }
+
+    private void reportSaveFailure(Throwable error) {
+        LOGGER.warn("Failed to save task entries", error);
+        boolean first;
+        synchronized (this) {
+            first = !saveFailing;
+            saveFailing = true;
+        }
+        if (first) {
+            for (var listener : saveFailureListeners) {
+                listener.accept(error);
+            }
+        }
+    }
+
+    /**
+     * Add a listener for failed saves. Failed saves are tried again until one works, and listeners are only told about
+     * the first failure of each run, on the thread that saw it.
+     *
+     * @param listener the listener
+     */
+    public void addSaveFailureListener(Consumer<? super Throwable> listener) {
+        saveFailureListeners.add(listener);
+    }
+
+    /**
+     * Save the changes made so far now, rather than after the usual delay, e.g. before exiting.
+     *
+     * @return a future completing once they are written, failures are logged
+     */
+    public CompletableFuture<Void> flush() {
+        return saveSink.flush().thenCompose(ignored -> {
+            synchronized (storeLock) {
+                return store.commitPending();
+            }
+        });
+    }
+
+    /**
+     * {@return statistics about the saves made so far}
+     */
+    public synchronized TaskSaveStats getSaveStats() {
+        return new TaskSaveStats(
+            saveCount, totalSaveTime, lastSaveTime, bytesSerialized, lastBytesSerialized,
+            saveSink.getDepth(), saveSink.getConflatedCount()
+        );
+    }
+
+    /**
+     * Add a listener. It is first called with the current entries as additions, if there are any.
+     *
+     * @param listener the listener
+     */
+    public synchronized void addListener(TaskEntryListener listener) {
+        if (!entries.isEmpty()) {
+            listener.onChanges(entries.values().stream()
+                .map(entry -> new TaskEntryChange(entry.id(), null, entry))
+                .toList());
+        }
+        listeners.add(listener);
+    }
+
+    public void removeListener(TaskEntryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Follow the changes from now on. Subscribers that fall {@value #CHANGE_BUFFER_SIZE} changes behind fail, and
+     * can resume with {@link #changes(long, int, BufferOverflowStrategy)}.
+     *
+     * @return the changes
+     * @see #changes(long, int, BufferOverflowStrategy)
+     */
+    public Flux<TaskChange> changes() {
+        return changeFeed.follow(OptionalLong.empty(), CHANGE_BUFFER_SIZE, BufferOverflowStrategy.ERROR);
+    }
+
+    /**
+     * Follow the changes after a sequence number, e.g. the last one seen before failing.
+     *
+     * <p>
+     * Each subscriber has its own buffer, and is called on a separate scheduler rather than the thread that made the
+     * change, so a slow subscriber only affects itself. The last {@value #CHANGE_HISTORY_SIZE} changes are kept to
+     * resume from. The feed fails with an {@link IllegalStateException} if the changes after the sequence number are
+     * no longer kept, in which case the subscriber should start over from {@link #getEntries()}.
+     * </p>
+     *
+     * @param afterSequence the sequence number of the last change already seen, or {@code 0} for none
+     * @param bufferSize how many changes the subscriber can fall behind by
+     * @param overflow what to do when it falls further behind
+     * @return the changes
+     */
+    public Flux<TaskChange> changes(long afterSequence, int bufferSize, BufferOverflowStrategy overflow) {
+        return changeFeed.follow(OptionalLong.of(afterSequence), bufferSize, overflow);
+    }
+
+    /**
+     * {@return the sequence number of the latest change, or {@code 0} if there are none}
+     */
+    public long getChangeSequence() {
+        return changeFeed.getSequence();
+    }
+
+    /**
+     * {@return an unmodifiable, live view of the entries}
+     */
+    public Collection<TaskEntry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    public Optional<TaskEntry> getEntry(String id) {
+        return Optional.ofNullable(entries.get(id));
+    }
+
+    /**
+     * {@return {@code true} if this exact entry is still managed, i.e. it has not been deleted or replaced}
+     */
+    public boolean isCurrent(TaskEntry entry) {
+        return entries.get(entry.id()) == entry;
+    }
+
+    public void put(TaskEntry entry) {
+        batch(tx -> tx.put(entry));
+    }
+
+    public void delete(String id) {
+        batch(tx -> tx.delete(id));
+    }
+
+    /**
+     * Apply many changes at once. Listeners see a single call, and the changes are saved together. If the body throws,
+     * the changes it made are undone, and nothing is reported or saved.
+     *
+     * @param body the changes to make
+     */
+    public synchronized void batch(Consumer<? super Transaction> body) {
+        checkState(batchChanges == null, "Already in a batch");
+        var changes = new ArrayList<TaskEntryChange>();
+        // The IDs this batch marked as changed while loading, to unmark if it's undone
+        var markedWhileLoading = new ArrayList<String>();
+        batchChanges = changes;
+        try {
+            body.accept(new Transaction() {
+                @Override
+                public void put(TaskEntry entry) {
+                    var old = entries.put(entry.id(), entry);
+                    changes.add(new TaskEntryChange(entry.id(), old, entry));
+                    markChangedWhileLoading(entry.id(), markedWhileLoading);
+                    index(entry.id(), entry);
+                }
+
+                @Override
+                public void delete(String id) {
+                    var old = entries.remove(id);
+                    markChangedWhileLoading(id, markedWhileLoading);
+                    if (old != null) {
+                        changes.add(new TaskEntryChange(id, old, null));
+                        index(id, null);
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            undo(changes, markedWhileLoading);
+            throw t;
+        } finally {
+            batchChanges = null;
+        }
+        if (!changes.isEmpty()) {
+            for (TaskEntryChange change : changes) {
+                saveSink.mark(change.id());
+            }
+            fireChanges(changes);
+        }
+    }
+
+    // Must hold the lock
+    private void markChangedWhileLoading(String id, List<String> marked) {
+        if (changedWhileLoading != null && changedWhileLoading.add(id)) {
+            marked.add(id);
+        }
+    }
+
+    // Must hold the lock
+    private void undo(List<TaskEntryChange> changes, List<String> markedWhileLoading) {
+        // Newest first, so an entry changed more than once ends up as it was before the first change
+        for (TaskEntryChange change : Lists.reverse(changes)) {
+            if (change.removed() == null) {
+                entries.remove(change.id());
+            } else {
+                entries.put(change.id(), change.removed());
+            }
+            index(change.id(), change.removed());
+        }
+        if (changedWhileLoading != null) {
+            markedWhileLoading.forEach(changedWhileLoading::remove);
+        }
+    }
+
+    /**
+     * {@return the entry with the earliest next occurrence, if any}
+     */
+    public synchronized Optional<TaskOccurrence> peekNextDue() {
+        return dueIndex.size() == 0 ? Optional.empty() : Optional.of(toOccurrence(dueIndex.get(0)));
+    }
+
+    /**
+     * Find the entries with a next occurrence before a time.
+     *
+     * @param time the time, exclusive
+     * @return the entries and their next occurrences, earliest first
+     */
+    public List<TaskOccurrence> dueBefore(Instant time) {
+        return dueBetween(Instant.MIN, time);
+    }
+
+    /**
+     * Find the entries with a next occurrence in a range.
+     *
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the entries and their next occurrences, earliest first
+     */
+    public synchronized List<TaskOccurrence> dueBetween(Instant from, Instant to) {
+        int start = dueIndex.countLessThan(DaggerHack.Due.probe(from));
+        int end = dueIndex.countLessThan(DaggerHack.Due.probe(to));
+        var due = new ArrayList<TaskOccurrence>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) {
+            due.add(toOccurrence(dueIndex.get(i)));
+        }
+        return due;
+    }
+
+    /**
+     * Find the entry with the earliest next occurrence at or after a time.
+     *
+     * @param time the time, inclusive
+     * @return the entry and its next occurrence, if any
+     */
+    public synchronized Optional<TaskOccurrence> nextDueFrom(Instant time) {
+        int index = dueIndex.countLessThan(DaggerHack.Due.probe(time));
+        return index < dueIndex.size() ? Optional.of(toOccurrence(dueIndex.get(index))) : Optional.empty();
+    }
+
+    /**
+     * Count the entries with a next occurrence before a time.
+     *
+     * @param time the time, exclusive
+     * @return the number of entries
+     */
+    public synchronized int countDueBefore(Instant time) {
+        return dueIndex.countLessThan(DaggerHack.Due.probe(time));
+    }
+
+    /**
+     * {@return the number of entries whose next occurrence has passed}
+     */
+    public int getOverdueCount() {
+        return countDueBefore(Instant.now());
+    }
+
+    private static TaskOccurrence toOccurrence(DaggerHack.Due due) {
+        return new TaskOccurrence(Objects.requireNonNull(due.entry()), due.time());
+    }
+
+    // Must hold the lock
+    private void index(String id, @Nullable TaskEntry entry) {
+        var old = dueById.remove(id);
+        if (old != null) {
+            dueIndex.remove(old);
+        }
+        if (entry == null) {
+            return;
+        }
+        Instant time;
+        try {
+            time = entry.nextOccurrence();
+        } catch (IllegalStateException e) {
+            // It never occurs, so it's never due
+            return;
+        }
+        var due = new DaggerHack.Due(time, id, entry);
+        dueById.put(id, due);
+        dueIndex.add(due);
+    }
+
+    public void putAll(Collection<? extends TaskEntry> entries) {
+        batch(tx -> entries.forEach(tx::put));
+    }
+
+    public void deleteAll(Collection<String> ids) {
+        batch(tx -> ids.forEach(tx::delete));
+    }
+
+    /**
+     * Load the saved entries in the background, parsing large files in parallel.
+     *
+     * @return a future completing when all entries have been loaded
+     * @see #initialize(TaskLoadStrategy)
+     */
+    public CompletableFuture<Void> initialize() {
+        return initialize(TaskLoadStrategy.PARALLEL);
+    }
+
+    /**
+     * Load the saved entries, in the background. Listeners receive them in chunks as they are read.
+     *
+     * <p>
+     * Entries can be changed while loading. Those changes win over the loaded entries with the same IDs.
+     * </p>
+     *
+     * @param strategy how to read the entries
+     * @return a future completing when all entries have been loaded
+     */
+    public CompletableFuture<Void> initialize(TaskLoadStrategy strategy) {
+        synchronized (this) {
+            checkState(changedWhileLoading == null, "Already loading");
+            changedWhileLoading = new HashSet<>();
+        }
+        return Completables.callAsync(() -> {
+            LOGGER.info(() -> "Loading task entries, strategy=" + strategy);
+            var stopwatch = Stopwatch.createStarted();
+            var firstChunk = new AtomicReference<Duration>();
+            try {
+                synchronized (storeLock) {
+                    store.load(strategy, records -> {
+                        applyLoaded(records);
+                        firstChunk.compareAndSet(null, stopwatch.elapsed());
+                    }, () -> List.copyOf(entries.values()));
+                }
+            } finally {
+                synchronized (this) {
+                    changedWhileLoading = null;
+                }
+            }
+            LOGGER.info(() -> "Loaded " + entries.size() + " task entries in " + stopwatch.elapsed().toMillis() + "ms"
+                + Optional.ofNullable(firstChunk.get()).map(d -> ", first chunk after " + d.toMillis() + "ms")
+                .orElse(""));
+            return null;
+        });
+    }
+
+    private synchronized void applyLoaded(List<TaskJournalRecord> records) {
+        var changedIds = Objects.requireNonNull(changedWhileLoading);
+        // These are already saved, so they only go to the listeners
+        var changes = new ArrayList<TaskEntryChange>(records.size());
+        for (TaskJournalRecord record : records) {
+            if (changedIds.contains(record.id())) {
+                // Changed since loading started, so this is out of date
+                continue;
+            }
+            if (record instanceof TaskJournalRecord.Put put) {
+                var entry = put.entry();
+                changes.add(new TaskEntryChange(entry.id(), entries.put(entry.id(), entry), entry));
+                index(entry.id(), entry);
+            } else if (record instanceof TaskJournalRecord.Delete delete) {
+                var old = entries.remove(delete.id());
+                if (old != null) {
+                    index(delete.id(), null);
+                    changes.add(new TaskEntryChange(delete.id(), old, null));
+                }
+            } else {
+                throw new IllegalStateException("Unknown journal record type " + record.getClass());
+            }
+        }
+        if (!changes.isEmpty()) {
+            fireChanges(changes);
+        }
+    }
+
+    private void fireChanges(List<TaskEntryChange> changes) {
+        changeFeed.publish(changes);
+        var view = Collections.unmodifiableList(changes);
+        for (TaskEntryListener listener : listeners) {
+            try {
+                listener.onChanges(view);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Task entry listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Helpers for compactly storing task IDs, which are usually random UUIDs.
+ */
+final class TaskIds {
+    // The value of each lower-case hex digit, or -1
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            NIBBLES[Character.forDigit(i, 16)] = (byte) i;
+        }
+    }
+
+    /**
+     * {@return the UUID, if {@code id} is one in the canonical form {@link UUID#toString()} produces, else null}
+     */
+    static @Nullable UUID asCanonicalUuid(String id) {
+        if (id.length() != 36
+            || id.charAt(8) != '-' || id.charAt(13) != '-' || id.charAt(18) != '-' || id.charAt(23) != '-') {
+            return null;
+        }
+        long group1 = hex(id, 0, 8);
+        long group2 = hex(id, 9, 13);
+        long group3 = hex(id, 14, 18);
+        long group4 = hex(id, 19, 23);
+        long group5 = hex(id, 24, 36);
+        if ((group1 | group2 | group3 | group4 | group5) < 0) {
+            return null;
+        }
+        return new UUID(group1 << 32 | group2 << 16 | group3, group4 << 48 | group5);
+    }
+
+    /**
+     * {@return the value of the hex digits in the range, or -1 if any of them isn't one}
+     */
+    private static long hex(String id, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = id.charAt(i);
+            int nibble = c < NIBBLES.length ? NIBBLES[c] : -1;
+            if (nibble < 0) {
+                return -1;
+            }
+            value = (value << 4) | nibble;
+        }
+        return value;
+    }
+
+    private TaskIds() {
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import net.octyl.clockresonator.core.persist.PersistenceService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Persists task entries as a snapshot plus an append-only journal of changes since that snapshot.
+ *
+ * <p>
+ * The snapshot holds all entries in a {@link TaskSnapshotFormat}, and the journal has one JSON
+ * {@link TaskJournalRecord} per line. Once the journal outgrows the snapshot, it is folded into a new snapshot.
+ * Replaying a record is idempotent, so if we crash between writing the snapshot and clearing the journal, replaying
+ * the stale journal is harmless.
+ * </p>
+ *
+ * <p>
+ * If a write fails, the journal on disk may be missing records, so the next save compacts it regardless of its size.
+ * </p>
+ *
+ * <p>
+ * JSON snapshots are spliced together from the serialized form of each entry, which is kept until the entry changes,
+ * so compaction only serializes the entries changed since the last one.
+ * </p>
+ *
+ * <p>
+ * Writes go through a {@link PersistenceService}, so they are committed with its durability, together with whatever
+ * else is being persisted.
+ * </p>
+ *
+ * <p>
+ * This class is not thread-safe, all calls should come from the same thread.
+ * </p>
+ */
+class TaskJournal implements TaskStore {
+    private static final Logger LOGGER = LogManager.getLogger();
+    // Don't bother compacting tiny journals, even if the snapshot is tinier
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+    // Small enough that the first entries can be shown quickly, large enough to not flood listeners
+    private static final int LOAD_CHUNK_SIZE = 256;
+    // Below this, splitting the snapshot up costs more than parsing it in parallel saves
+    private static final long PARALLEL_MIN_BYTES = 1024 * 1024;
+    // The source name for the persistence service's latency budget
+    private static final String PERSISTENCE_SOURCE = "tasks";
+
+    private final JsonMapper jsonMapper;
+    private final PersistenceService persistence;
+    private final Duration latencyBudget;
+    private final ObjectReader entryReader;
+    private final Path tasksFile;
+    private final TaskSnapshotFormat format;
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private long snapshotSize;
+    private long journalSize;
+    private @Nullable CompletableFuture<Void> snapshotWrite;
+    // Set by failed writes, from the persistence service's thread
+    private volatile boolean compactionNeeded;
+    private volatile Consumer<? super Throwable> writeFailureHandler = error -> {
+    };
+    // JSON of each entry as of the last compaction, removed when a record changes it
+    private final Map<String, Fragment> fragments = new HashMap<>();
+
+    private record Fragment(TaskEntry entry, byte[] json) {
+    }
+
+    TaskJournal(JsonMapper jsonMapper, Path tasksFile, TaskSnapshotFormat format, PersistenceService persistence) {
+        this.jsonMapper = jsonMapper;
+        this.persistence = persistence;
+        this.latencyBudget = persistence.latencyBudget(PERSISTENCE_SOURCE);
+        this.entryReader = jsonMapper.readerFor(TaskEntry.class);
+        this.tasksFile = tasksFile;
+        this.format = format;
+        this.snapshotFile = format.snapshotFile(tasksFile);
+        this.journalFile = tasksFile.resolveSibling(tasksFile.getFileName() + ".journal");
+    }
+
+    /**
+     * Load the snapshot and replay the journal over it. Any torn or corrupt tail of the journal is cut off. If the
+     * newest snapshot is in a different format, it is converted once loading is done.
+     *
+     * <p>
+     * {@code chunkConsumer} gets the first chunk as soon as it has been parsed, instead of after the whole file.
+     * Snapshot entries are delivered as {@link TaskJournalRecord.Put puts}, followed by the records from the journal.
+     * </p>
+     *
+     * @param strategy how to read the snapshot
+     * @param chunkConsumer receives the records, in order, in chunks of at most {@value #LOAD_CHUNK_SIZE}
+     * @param loadedEntries the entries once everything has been loaded, used if the snapshot is converted
+     */
+    @Override
+    public void load(TaskLoadStrategy strategy, Consumer<List<TaskJournalRecord>> chunkConsumer,
+                     Supplier<? extends Collection<? extends TaskEntry>> loadedEntries) throws IOException {
+        var chunker = new Chunker(chunkConsumer);
+        var sourceFormat = newestSnapshotFormat();
+        if (sourceFormat != null) {
+            var sourceFile = sourceFormat.snapshotFile(tasksFile);
+            if (sourceFormat == format) {
+                snapshotSize = Files.size(sourceFile);
+            }
+            readSnapshot(sourceFormat, sourceFile, strategy, chunker);
+        }
+        if (Files.exists(journalFile)) {
+            var bytes = Files.readAllBytes(journalFile);
+            int goodEnd = 0;
+            int replayed = 0;
+            for (int start = 0; start < bytes.length; ) {
+                int end = indexOf(bytes, (byte) '\n', start);
+                if (end < 0) {
+                    LOGGER.warn(() -> "Discarding torn record at the end of the task journal");
+                    break;
+                }
+                TaskJournalRecord record;
+                try {
+                    record = jsonMapper.readValue(Arrays.copyOfRange(bytes, start, end), TaskJournalRecord.class);
+                } catch (IOException e) {
+                    LOGGER.warn("Discarding corrupt task journal from byte " + start, e);
+                    break;
+                }
+                chunker.add(record);
+                replayed++;
+                start = end + 1;
+                goodEnd = start;
+            }
+            if (goodEnd < bytes.length) {
+                try (var channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                    channel.truncate(goodEnd);
+                }
+            }
+            journalSize = goodEnd;
+            int finalReplayed = replayed;
+            LOGGER.info(() -> "Replayed " + finalReplayed + " task journal records");
+        }
+        chunker.flush();
+        if (sourceFormat != null) {
+            if (sourceFormat != format) {
+                LOGGER.info(() -> "Converting task snapshot from " + sourceFormat + " to " + format);
+                compact(loadedEntries.get());
+                awaitSnapshotWrite();
+            }
+            // Anything left in another format is older than what we just loaded
+            for (TaskSnapshotFormat other : TaskSnapshotFormat.values()) {
+                if (other != format) {
+                    Files.deleteIfExists(other.snapshotFile(tasksFile));
+                }
+            }
+        }
+    }
+
+    private @Nullable TaskSnapshotFormat newestSnapshotFormat() throws IOException {
+        TaskSnapshotFormat newest = null;
+        FileTime newestTime = null;
+        for (TaskSnapshotFormat candidate : TaskSnapshotFormat.values()) {
+            var file = candidate.snapshotFile(tasksFile);
+            if (Files.exists(file)) {
+                var time = Files.getLastModifiedTime(file);
+                if (newestTime == null || time.compareTo(newestTime) > 0) {
+                    newest = candidate;
+                    newestTime = time;
+                }
+            }
+        }
+        return newest;
+    }
+
+    private void readSnapshot(TaskSnapshotFormat sourceFormat, Path file, TaskLoadStrategy strategy,
+                              Chunker chunker) throws IOException {
+        switch (sourceFormat) {
+            case JSON -> {
+                if (strategy == TaskLoadStrategy.PARALLEL && Files.size(file) >= PARALLEL_MIN_BYTES
+                    && ForkJoinPool.getCommonPoolParallelism() > 1) {
+                    new ParallelSnapshotReader(entryReader, ForkJoinPool.commonPool())
+                        .read(Files.readAllBytes(file), range -> {
+                            for (TaskEntry entry : range) {
+                                chunker.add(new TaskJournalRecord.Put(entry));
+                            }
+                        });
+                } else {
+                    try (MappingIterator<TaskEntry> snapshot = entryReader.readValues(file.toFile())) {
+                        while (snapshot.hasNextValue()) {
+                            chunker.add(new TaskJournalRecord.Put(snapshot.nextValue()));
+                        }
+                    }
+                }
+            }
+            // Compact enough that reading it all at once is fine
+            case BINARY -> BinaryTaskSnapshot.read(
+                Files.readAllBytes(file), entry -> chunker.add(new TaskJournalRecord.Put(entry))
+            );
+        }
+    }
+
+    private static final class Chunker {
+        private final Consumer<List<TaskJournalRecord>> consumer;
+        private final List<TaskJournalRecord> chunk = new ArrayList<>(LOAD_CHUNK_SIZE);
+
+        private Chunker(Consumer<List<TaskJournalRecord>> consumer) {
+            this.consumer = consumer;
+        }
+
+        void add(TaskJournalRecord record) {
+            chunk.add(record);
+            if (chunk.size() == LOAD_CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!chunk.isEmpty()) {
+                consumer.accept(List.copyOf(chunk));
+                chunk.clear();
+            }
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte needle, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == needle) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Append records to the journal, then compact it if it has grown too large.
+     *
+     * @param records the records to append
+     * @param currentEntries the current entries, used if compaction is needed
+     * @return how many bytes were serialized, including any compaction
+     */
+    @Override
+    public long save(List<TaskJournalRecord> records,
+                     Supplier<? extends Collection<? extends TaskEntry>> currentEntries) throws IOException {
+        LOGGER.debug(() -> "Appending task journal records, count=" + records.size());
+        var buffer = new ByteArrayOutputStream();
+        var recordWriter = jsonMapper.writerFor(TaskJournalRecord.class);
+        for (TaskJournalRecord record : records) {
+            buffer.write(recordWriter.writeValueAsBytes(record));
+            buffer.write('\n');
+            fragments.remove(record.id());
+        }
+        if (buffer.size() > 0) {
+            persistence.append(journalFile, buffer.toByteArray(), latencyBudget)
+                .whenComplete(onFailure("Failed to append to the task journal"));
+        }
+        journalSize += buffer.size();
+        long serialized = buffer.size();
+        if (compactionNeeded || journalSize > Math.max(MIN_COMPACTION_BYTES, snapshotSize)) {
+            serialized += compact(currentEntries.get());
+        }
+        return serialized;
+    }
+
+    /**
+     * Commit the pending writes now, rather than when their latency budget runs out. Failed writes are logged.
+     *
+     * @return a future completing once they are committed
+     */
+    @Override
+    public CompletableFuture<Void> commitPending() {
+        return persistence.flush();
+    }
+
+    @Override
+    public void setWriteFailureHandler(Consumer<? super Throwable> handler) {
+        this.writeFailureHandler = handler;
+    }
+
+    private long compact(Collection<? extends TaskEntry> taskEntries) throws IOException {
+        LOGGER.info(() -> "Compacting task journal, count=" + taskEntries.size());
+        // Cleared first, so a failure of this compaction's writes sets it again
+        compactionNeeded = false;
+        byte[] snapshot;
+        long serialized;
+        switch (format) {
+            case JSON -> {
+                var out = new ByteArrayOutputStream();
+                serialized = writeJsonSnapshot(taskEntries, out);
+                snapshot = out.toByteArray();
+            }
+            case BINARY -> {
+                snapshot = BinaryTaskSnapshot.write(taskEntries);
+                // Entries are encoded relative to the previous one, so there is nothing to re-use
+                serialized = snapshot.length;
+            }
+            default -> throw new IllegalStateException("Unknown snapshot format " + format);
+        }
+        snapshotSize = snapshot.length;
+        snapshotWrite = persistence.replace(snapshotFile, snapshot, latencyBudget);
+        snapshotWrite.whenComplete(onFailure("Failed to write the task snapshot"));
+        // Committed after the snapshot, so a crash in between only leaves a journal that's harmless to replay
+        persistence.replace(journalFile, new byte[0], latencyBudget)
+            .whenComplete(onFailure("Failed to clear the task journal"));
+        journalSize = 0;
+        return serialized;
+    }
+
+    /**
+     * Write the entries as a JSON array, re-using the JSON of unchanged entries.
+     *
+     * @return how many bytes were freshly serialized
+     */
+    private long writeJsonSnapshot(Collection<? extends TaskEntry> taskEntries, OutputStream out) throws IOException {
+        var entryWriter = jsonMapper.writerFor(TaskEntry.class);
+        long serialized = 0;
+        var current = new HashSet<String>(taskEntries.size());
+        out.write('[');
+        boolean first = true;
+        for (TaskEntry entry : taskEntries) {
+            var fragment = fragments.get(entry.id());
+            // Entries are immutable, so the same instance always has the same JSON
+            if (fragment == null || fragment.entry() != entry) {
+                fragment = new Fragment(entry, entryWriter.writeValueAsBytes(entry));
+                fragments.put(entry.id(), fragment);
+                serialized += fragment.json().length;
+            }
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write(fragment.json());
+            current.add(entry.id());
+        }
+        out.write(']');
+        // Deletes already dropped theirs, but entries can also go missing when converting a snapshot
+        fragments.keySet().retainAll(current);
+        return serialized;
+    }
+
+    private void awaitSnapshotWrite() throws IOException {
+        if (snapshotWrite == null) {
+            return;
+        }
+        persistence.flush();
+        try {
+            snapshotWrite.join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to write the task snapshot", e.getCause());
+        }
+    }
+
+    /**
+     * Report a failed write, and make the next save compact the journal. The files on disk are then missing what this
+     * write had, but the sizes already count it, and later appends would land past the gap.
+     */
+    private BiConsumer<Void, Throwable> onFailure(String message) {
+        return (result, error) -> {
+            if (error != null) {
+                LOGGER.warn(message, error);
+                compactionNeeded = true;
+                writeFailureHandler.accept(error);
+            }
+        };
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * A single change to the task entries, as recorded in the journal.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "@op")
+@JsonSubTypes({
+    @JsonSubTypes.Type(value = TaskJournalRecord.Put.class, name = "put"),
+    @JsonSubTypes.Type(value = TaskJournalRecord.Delete.class, name = "delete")
+})
+// TODO sealed types in 17
+public interface TaskJournalRecord {
+    /**
+     * {@return the ID of the changed entry}
+     */
+    String id();
+
+    /**
+     * The entry was added or replaced.
+     */
+    record Put(TaskEntry entry) implements TaskJournalRecord {
+        @Override
+        public String id() {
+            return entry.id();
+        }
+    }
+
+    /**
+     * The entry with the given ID was removed.
+     */
+    record Delete(String id) implements TaskJournalRecord {
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+/**
+ * How {@link TaskEntryManager#initialize(TaskLoadStrategy)} reads the saved entries.
+ */
+public enum TaskLoadStrategy {
+    /**
+     * Stream the entries on one thread. Uses the least memory.
+     */
+    SEQUENTIAL,
+    /**
+     * Read the whole file, then parse parts of it in parallel on the common {@link java.util.concurrent.ForkJoinPool}.
+     * Small files, or machines with a single core, still read sequentially, as splitting costs more than it saves.
+     */
+    PARALLEL,
+    ;
+}
@@ -16,19 +16,15 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package net.octyl.clockresonator.app.inject;
+package net.octyl.clockresonator.core.model;
 
-import com.google.common.eventbus.EventBus;
-import dagger.Module;
-import dagger.Provides;
+import java.time.Instant;
 
-import javax.inject.Singleton;
-
-@Module
-public class EventBusModule {
-    @Provides
-    @Singleton
-    public static EventBus provideEventBus() {
-        return new EventBus("clock-resonator");
-    }
+/**
+ * A single occurrence of an entry, as kept by the {@link OccurrenceHorizon}.
+ *
+ * @param entry the entry
+ * @param time when it occurs
+ */
+public record TaskOccurrence(TaskEntry entry, Instant time) {
 }
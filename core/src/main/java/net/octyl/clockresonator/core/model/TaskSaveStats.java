@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import java.time.Duration;
+
+/**
+ * Statistics about the saves made by a {@link TaskEntryManager}.
+ *
+ * @param saveCount how many batches have been saved
+ * @param totalSaveTime the time spent saving all of them
+ * @param lastSaveTime the time spent saving the last one
+ * @param bytesSerialized how many bytes were serialized across all saves
+ * @param lastBytesSerialized how many bytes were serialized for the last one
+ * @param queueDepth how many entries have changes waiting to be saved
+ * @param conflatedChanges how many changes were never saved on their own, as a later change to the same entry
+ *     replaced them first
+ */
+public record TaskSaveStats(
+    long saveCount,
+    Duration totalSaveTime,
+    Duration lastSaveTime,
+    long bytesSerialized,
+    long lastBytesSerialized,
+    int queueDepth,
+    long conflatedChanges
+) {
+}
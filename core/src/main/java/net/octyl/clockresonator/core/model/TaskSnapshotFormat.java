@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import java.nio.file.Path;
+
+/**
+ * The on-disk format of the task entry snapshot. The journal of recent changes is always JSON.
+ *
+ * <p>
+ * A snapshot saved in one format is converted to the other the next time the entries are loaded.
+ * </p>
+ */
+public enum TaskSnapshotFormat {
+    /**
+     * Human-readable JSON, in the tasks file itself.
+     */
+    JSON,
+    /**
+     * A compact binary format, in a {@code .bin} file next to the tasks file. Much smaller and faster to load and
+     * save than JSON.
+     */
+    BINARY,
+    ;
+
+    Path snapshotFile(Path tasksFile) {
+        return switch (this) {
+            case JSON -> tasksFile;
+            case BINARY -> {
+                var name = tasksFile.getFileName().toString();
+                if (name.endsWith(".json")) {
+                    name = name.substring(0, name.length() - ".json".length());
+                }
+                yield tasksFile.resolveSibling(name + ".bin");
+            }
+        };
+    }
+}
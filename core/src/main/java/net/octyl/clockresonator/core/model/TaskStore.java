@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Where a {@link TaskEntryManager} saves its entries.
+ *
+ * <p>
+ * The manager calls {@link #load} once, then {@link #save} for each batch of changes, always from one thread at a
+ * time.
+ * </p>
+ */
+public interface TaskStore {
+    /**
+     * Load the saved entries.
+     *
+     * @param strategy how to read the entries, if the store has a choice
+     * @param chunkConsumer receives the saved state as records, in order, in chunks
+     * @param loadedEntries the entries once everything has been loaded, for stores that want to re-save them
+     */
+    void load(TaskLoadStrategy strategy, Consumer<List<TaskJournalRecord>> chunkConsumer,
+              Supplier<? extends Collection<? extends TaskEntry>> loadedEntries) throws IOException;
+
+    /**
+     * Save a batch of changes.
+     *
+     * @param records the changes, in order
+     * @param currentEntries the current entries, for stores that sometimes re-save everything
+     * @return how many bytes were serialized for this batch
+     */
+    long save(List<TaskJournalRecord> records,
+              Supplier<? extends Collection<? extends TaskEntry>> currentEntries) throws IOException;
+
+    /**
+     * Write out what was saved now, for stores that write it later. By default, saves are written when they return.
+     *
+     * @return a future completing once everything saved so far is written
+     */
+    default CompletableFuture<Void> commitPending() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Set what to call when a write fails after {@link #save} returned, for stores that write it later. The store
+     * repairs its files on the next save.
+     *
+     * @param handler called with the failure, on the thread that saw it
+     */
+    default void setWriteFailureHandler(Consumer<? super Throwable> handler) {
+    }
+}
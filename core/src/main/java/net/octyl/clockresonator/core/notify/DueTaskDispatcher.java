@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.notify;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.octyl.clockresonator.core.model.TaskEntry;
+import net.octyl.clockresonator.core.model.TaskEntryManager;
+import net.octyl.clockresonator.core.model.TaskOccurrence;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Tells the {@link DueTaskSink sinks} when entries come due.
+ *
+ * <p>
+ * A single timer is armed for the earliest {@linkplain TaskEntry#nextOccurrence() next occurrence} that hasn't been
+ * dispatched yet, found with the manager's due index. When it fires, every entry whose next occurrence passed since
+ * the last dispatch is sent to the sinks in one call, however many there are, and the timer is re-armed. Changes to
+ * the entries re-arm it too, so nothing is polled.
+ * </p>
+ *
+ * <p>
+ * The timer never waits more than {@value #MAX_SLEEP_MINUTES} minute(s), so a jump in the wall clock, e.g. after the
+ * system sleeps, is noticed soon after. Entries that were already due when {@linkplain #start() started} are not
+ * dispatched.
+ * </p>
+ */
+@Singleton
+public class DueTaskDispatcher {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final long MAX_SLEEP_MINUTES = 1;
+
+    private final TaskEntryManager manager;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private final List<DueTaskSink> sinks = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean rearmQueued = new AtomicBoolean();
+    // Only used on the executor
+    private Instant dispatchedUntil;
+    private @Nullable ScheduledFuture<?> timer;
+    private @Nullable Instant timerDeadline;
+    private boolean started;
+
+    @Inject
+    public DueTaskDispatcher(TaskEntryManager manager) {
+        this(manager, Clock.systemUTC());
+    }
+
+    /**
+     * Create a dispatcher. It does nothing until {@linkplain #start() started}.
+     *
+     * @param manager the manager with the entries
+     * @param clock the clock to take now from
+     */
+    public DueTaskDispatcher(TaskEntryManager manager, Clock clock) {
+        this.manager = manager;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("clock-resonator-due-%d")
+            .setDaemon(true)
+            .build());
+        this.dispatchedUntil = clock.instant();
+    }
+
+    /**
+     * Add a sink to send due entries to.
+     *
+     * @param sink the sink
+     */
+    public void addSink(DueTaskSink sink) {
+        sinks.add(sink);
+    }
+
+    public synchronized void start() {
+        checkState(!started, "Already started");
+        started = true;
+        // Listeners are called with the manager locked, so the timer is re-armed from the executor instead
+        manager.addListener(changes -> queueRearm());
+        executor.execute(() -> {
+            dispatchedUntil = clock.instant();
+            rearm();
+        });
+    }
+
+    private void queueRearm() {
+        if (rearmQueued.compareAndSet(false, true)) {
+            executor.execute(this::rearm);
+        }
+    }
+
+    private void rearm() {
+        rearmQueued.set(false);
+        var now = clock.instant();
+        var latest = now.plus(MAX_SLEEP_MINUTES, ChronoUnit.MINUTES);
+        var deadline = manager.nextDueFrom(dispatchedUntil)
+            .map(TaskOccurrence::time)
+            .filter(time -> time.isBefore(latest))
+            .orElse(latest);
+        if (timer != null) {
+            if (deadline.equals(timerDeadline)) {
+                return;
+            }
+            timer.cancel(false);
+        }
+        timerDeadline = deadline;
+        long delay = Math.max(0, Duration.between(now, deadline).toNanos());
+        timer = executor.schedule(this::fire, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void fire() {
+        timer = null;
+        timerDeadline = null;
+        var now = clock.instant();
+        if (now.isAfter(dispatchedUntil)) {
+            var due = manager.dueBetween(dispatchedUntil, now);
+            dispatchedUntil = now;
+            if (!due.isEmpty()) {
+                dispatch(due);
+            }
+        }
+        rearm();
+    }
+
+    private void dispatch(List<TaskOccurrence> due) {
+        LOGGER.debug(() -> "Dispatching " + due.size() + " due entries");
+        for (DueTaskSink sink : sinks) {
+            try {
+                sink.onDue(due);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Sink failed to handle due entries", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.notify;
+
+import net.octyl.clockresonator.core.model.TaskOccurrence;
+
+import java.util.List;
+
+/**
+ * Receives the entries that have come due, e.g. to show them to the user.
+ */
+@FunctionalInterface
+public interface DueTaskSink {
+    /**
+     * Called with every entry whose next occurrence passed since the last call, on the dispatcher's thread.
+     * Implementations should hand off anything slow.
+     *
+     * @param due the entries and the occurrences that passed, earliest first, never empty
+     */
+    void onDue(List<TaskOccurrence> due);
+}
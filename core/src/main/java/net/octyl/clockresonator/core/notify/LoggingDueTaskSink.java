@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.notify;
+
+import net.octyl.clockresonator.core.model.TaskOccurrence;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Logs the entries that have come due. Only the first few are named, the rest are counted.
+ */
+public class LoggingDueTaskSink implements DueTaskSink {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final int MAX_NAMED = 10;
+
+    @Override
+    public void onDue(List<TaskOccurrence> due) {
+        LOGGER.info(() -> {
+            var names = due.stream()
+                .limit(MAX_NAMED)
+                .map(occurrence -> "'" + occurrence.entry().name() + "'")
+                .collect(Collectors.joining(", "));
+            var more = due.size() > MAX_NAMED ? " and " + (due.size() - MAX_NAMED) + " more" : "";
+            return due.size() + " task(s) due: " + names + more;
+        });
+    }
+}
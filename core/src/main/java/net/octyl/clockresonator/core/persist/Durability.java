@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.persist;
+
+/**
+ * How much a {@link PersistenceService} commit guarantees once it completes.
+ */
+public enum Durability {
+    /**
+     * Leave flushing to the OS. A crash can lose recent commits, or leave a file empty.
+     */
+    NONE,
+    /**
+     * Sync each written file's contents. A crash can still lose a recent create or replace, on file systems that
+     * don't order renames with the data.
+     */
+    FSYNC_FILE,
+    /**
+     * Also sync the directories holding new or replaced files, so a completed commit survives a crash.
+     */
+    FSYNC_FILE_AND_DIRECTORY,
+    ;
+
+    boolean syncsFiles() {
+        return this != NONE;
+    }
+}
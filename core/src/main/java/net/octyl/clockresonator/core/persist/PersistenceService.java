@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.persist;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes files for everything that persists state, grouping the writes into commits.
+ *
+ * <p>
+ * Each write has a latency budget, how long it may wait before being committed. A commit happens when the earliest
+ * budget runs out, and takes every pending write along with it, so there is one round of I/O and syncing instead of
+ * one per write. Writes to the same file are merged, and the latest replacement wins.
+ * </p>
+ *
+ * <p>
+ * Files are committed in the order they were last replaced, or first written if never replaced. This keeps e.g. a
+ * snapshot ahead of the truncation of the journal it replaces. If writing a file fails, the files after it in the
+ * commit fail without being written, so the journal is never truncated without the snapshot in place.
+ * </p>
+ */
+@Singleton
+public class PersistenceService {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final String DURABILITY_PROPERTY = "clockresonator.durability";
+    private static final String MAX_LATENCY_PROPERTY = "clockresonator.maxWriteLatencyMillis";
+    // Followed by the name of a source, e.g. "clockresonator.writeLatencyMillis.tasks"
+    private static final String LATENCY_PROPERTY_PREFIX = "clockresonator.writeLatencyMillis.";
+    private static final Duration DEFAULT_MAX_LATENCY = Duration.ofSeconds(1L);
+
+    private static final class PendingFile {
+        // Replaces the file's contents, if set
+        private byte @Nullable [] replacement;
+        private final List<byte[]> appends = new ArrayList<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    }
+
+    private final Durability durability;
+    private final Duration maxLatency;
+    private final ScheduledExecutorService executor;
+    // Guarded by this
+    private Map<Path, PendingFile> pending = new LinkedHashMap<>();
+    private @Nullable ScheduledFuture<?> scheduledCommit;
+    private long scheduledDeadline;
+
+    @Inject
+    public PersistenceService() {
+        this(
+            Durability.valueOf(System.getProperty(DURABILITY_PROPERTY, Durability.FSYNC_FILE.name())
+                .toUpperCase(Locale.ROOT)),
+            Duration.ofMillis(Long.getLong(MAX_LATENCY_PROPERTY, DEFAULT_MAX_LATENCY.toMillis()))
+        );
+    }
+
+    /**
+     * Create a service with its own commit thread.
+     *
+     * @param durability what each commit guarantees
+     * @param maxLatency the most that any write may wait before being committed
+     */
+    public PersistenceService(Durability durability, Duration maxLatency) {
+        this.durability = durability;
+        this.maxLatency = maxLatency;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("clock-resonator-persistence-%d")
+            .setDaemon(true)
+            .build());
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Get the latency budget for the writes of a source. It is the service's maximum, so writes from every source
+     * share commits, unless overridden with the {@code clockresonator.writeLatencyMillis.<source>} property.
+     *
+     * @param source the name of the source, e.g. {@code tasks}
+     * @return the latency budget to write with
+     */
+    public Duration latencyBudget(String source) {
+        var override = Long.getLong(LATENCY_PROPERTY_PREFIX + source);
+        return override == null ? maxLatency : Duration.ofMillis(override);
+    }
+
+    /**
+     * Atomically replace a file's contents. Earlier pending writes to it are dropped.
+     *
+     * @param file the file
+     * @param contents the new contents
+     * @param latencyBudget how long the write may wait, capped by the service's maximum
+     * @return a future completing once the write is committed
+     */
+    public CompletableFuture<Void> replace(Path file, byte[] contents, Duration latencyBudget) {
+        return submit(file, contents, false, latencyBudget);
+    }
+
+    /**
+     * Append to a file, creating it if needed.
+     *
+     * @param file the file
+     * @param contents the bytes to append
+     * @param latencyBudget how long the write may wait, capped by the service's maximum
+     * @return a future completing once the write is committed
+     */
+    public CompletableFuture<Void> append(Path file, byte[] contents, Duration latencyBudget) {
+        return submit(file, contents, true, latencyBudget);
+    }
+
+    /**
+     * Commit all pending writes now.
+     *
+     * @return a future completing once they are committed
+     */
+    public CompletableFuture<Void> flush() {
+        var future = new CompletableFuture<Void>();
+        synchronized (this) {
+            schedule(System.nanoTime());
+        }
+        // Runs after the commit, as the executor only has one thread
+        executor.execute(() -> future.complete(null));
+        return future;
+    }
+
+    private synchronized CompletableFuture<Void> submit(Path file, byte[] contents, boolean append,
+                                                        Duration latencyBudget) {
+        var pendingFile = pending.get(file);
+        if (pendingFile == null) {
+            pendingFile = new PendingFile();
+            pending.put(file, pendingFile);
+        }
+        if (append) {
+            pendingFile.appends.add(contents);
+        } else {
+            pendingFile.replacement = contents;
+            pendingFile.appends.clear();
+            // Move it to the end, so it lands after everything written before it
+            pending.remove(file);
+            pending.put(file, pendingFile);
+        }
+        var future = new CompletableFuture<Void>();
+        pendingFile.futures.add(future);
+        var budget = latencyBudget.compareTo(maxLatency) < 0 ? latencyBudget : maxLatency;
+        schedule(System.nanoTime() + budget.toNanos());
+        return future;
+    }
+
+    private void schedule(long deadline) {
+        if (scheduledCommit != null) {
+            if (deadline - scheduledDeadline >= 0) {
+                return;
+            }
+            if (!scheduledCommit.cancel(false)) {
+                // It's already running, and will pick up our writes or leave them for a new commit
+                scheduledCommit = null;
+            }
+        }
+        scheduledDeadline = deadline;
+        scheduledCommit = executor.schedule(
+            this::commit, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS
+        );
+    }
+
+    private void commit() {
+        Map<Path, PendingFile> files;
+        synchronized (this) {
+            files = pending;
+            pending = new LinkedHashMap<>();
+            scheduledCommit = null;
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        LOGGER.debug(() -> "Committing writes, files=" + files.size() + ", durability=" + durability);
+        var directories = new LinkedHashSet<Path>();
+        var written = new ArrayList<PendingFile>(files.size());
+        @Nullable Exception failure = null;
+        for (var entry : files.entrySet()) {
+            var file = entry.getKey();
+            var pendingFile = entry.getValue();
+            if (failure != null) {
+                var skipped = new IOException("Not written, as an earlier write in the commit failed", failure);
+                pendingFile.futures.forEach(future -> future.completeExceptionally(skipped));
+                continue;
+            }
+            try {
+                Files.createDirectories(file.getParent());
+                if (pendingFile.replacement != null || Files.notExists(file)) {
+                    // A new directory entry, which only syncing the directory makes durable
+                    directories.add(file.getParent());
+                }
+                if (pendingFile.replacement != null) {
+                    writeReplacement(file, pendingFile);
+                } else {
+                    writeAppends(file, pendingFile);
+                }
+                written.add(pendingFile);
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+                pendingFile.futures.forEach(future -> future.completeExceptionally(e));
+            }
+        }
+        if (durability == Durability.FSYNC_FILE_AND_DIRECTORY) {
+            for (Path directory : directories) {
+                syncDirectory(directory);
+            }
+        }
+        for (PendingFile pendingFile : written) {
+            pendingFile.futures.forEach(future -> future.complete(null));
+        }
+    }
+
+    private void writeReplacement(Path file, PendingFile pendingFile) throws IOException {
+        var tmp = Files.createTempFile(file.getParent(), "tmp", file.getFileName().toString());
+        try {
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                writeFully(channel, pendingFile.replacement);
+                for (byte[] append : pendingFile.appends) {
+                    writeFully(channel, append);
+                }
+                if (durability.syncsFiles()) {
+                    channel.force(false);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void writeAppends(Path file, PendingFile pendingFile) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (byte[] append : pendingFile.appends) {
+                writeFully(channel, append);
+            }
+            if (durability.syncsFiles()) {
+                channel.force(false);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        var buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open directories, and there's nothing more we can do there
+            LOGGER.debug(() -> "Unable to sync directory " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.util;
+
+import com.cronutils.model.Cron;
+import com.cronutils.model.CronType;
+import com.cronutils.model.SingleCron;
+import com.cronutils.model.field.CronField;
+import com.cronutils.model.field.CronFieldName;
+import com.cronutils.model.field.expression.Always;
+import com.cronutils.model.field.expression.And;
+import com.cronutils.model.field.expression.Between;
+import com.cronutils.model.field.expression.Every;
+import com.cronutils.model.field.expression.FieldExpression;
+import com.cronutils.model.field.expression.On;
+import com.cronutils.model.field.value.IntegerFieldValue;
+import com.cronutils.model.field.value.SpecialChar;
+import com.cronutils.model.time.ExecutionTime;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.zone.ZoneRules;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * An {@link ExecutionTime} for {@link CronType#UNIX} crons, compiled into one bitset per field.
+ *
+ * <p>
+ * Matches are found by scanning the bitsets field-by-field in local time, within each span of constant zone offset.
+ * This means times skipped by a DST gap never match, and times repeated by a DST overlap match in both offsets. The
+ * one exception is copied from cron-utils: stepping over an overlap from a match only repeats the schedule if it runs
+ * at least hourly, so daily schedules do not fire twice.
+ * </p>
+ *
+ * <p>
+ * cron-utils can skip valid times in a few odd cases, such as DST gaps at midnight or half-hour DST shifts. Those
+ * times are not skipped here.
+ * </p>
+ */
+public final class BitsetExecutionTime implements ExecutionTime {
+    // If there's no match within a full Gregorian cycle, there's never going to be one
+    private static final int SEARCH_YEARS = 400;
+    private static final Set<CronFieldName> UNIX_FIELDS = EnumSet.of(
+        CronFieldName.MINUTE, CronFieldName.HOUR, CronFieldName.DAY_OF_MONTH, CronFieldName.MONTH,
+        CronFieldName.DAY_OF_WEEK
+    );
+    private static final int[] SAKAMOTO_MONTH_OFFSETS = {0, 3, 2, 5, 0, 3, 5, 1, 4, 6, 2, 4};
+
+    /**
+     * Compile the given cron.
+     *
+     * @param cron the cron to compile, which must use the {@link CronType#UNIX} definition
+     * @return the compiled execution time
+     * @throws IllegalArgumentException if the cron can't be compiled
+     */
+    public static BitsetExecutionTime compile(Cron cron) {
+        if (!(cron instanceof SingleCron) || !cron.retrieveFieldsAsMap().keySet().equals(UNIX_FIELDS)) {
+            throw new IllegalArgumentException("Only UNIX crons are supported, got " + cron.asString());
+        }
+        var minute = cron.retrieve(CronFieldName.MINUTE);
+        var hour = cron.retrieve(CronFieldName.HOUR);
+        var dayOfMonth = cron.retrieve(CronFieldName.DAY_OF_MONTH);
+        var month = cron.retrieve(CronFieldName.MONTH);
+        var dayOfWeek = cron.retrieve(CronFieldName.DAY_OF_WEEK);
+        long dayOfWeekBits = compileField(dayOfWeek, 0, 7);
+        // 7 is also Sunday
+        if ((dayOfWeekBits & (1L << 7)) != 0) {
+            dayOfWeekBits = (dayOfWeekBits | 1L) & ~(1L << 7);
+        }
+        return new BitsetExecutionTime(
+            compileField(minute, 0, 59),
+            compileField(hour, 0, 23),
+            compileField(dayOfMonth, 1, 31),
+            compileField(month, 1, 12),
+            dayOfWeekBits,
+            !(dayOfMonth.getExpression() instanceof Always),
+            !(dayOfWeek.getExpression() instanceof Always),
+            cron.getCronDefinition().isMatchDayOfWeekAndDayOfMonth()
+        );
+    }
+
+    private static long compileField(CronField field, int min, int max) {
+        return compileExpression(field.getExpression(), min, max);
+    }
+
+    private static long compileExpression(FieldExpression expression, int min, int max) {
+        if (expression instanceof Always) {
+            return range(min, max, 1);
+        } else if (expression instanceof On on) {
+            if (on.getSpecialChar().getValue() != SpecialChar.NONE) {
+                throw new IllegalArgumentException("Unsupported special character: " + on.asString());
+            }
+            return range(value(on.getTime(), min, max), value(on.getTime(), min, max), 1);
+        } else if (expression instanceof Between between) {
+            if (!(between.getFrom() instanceof IntegerFieldValue from)
+                || !(between.getTo() instanceof IntegerFieldValue to)) {
+                throw new IllegalArgumentException("Unsupported range: " + between.asString());
+            }
+            return range(value(from, min, max), value(to, min, max), 1);
+        } else if (expression instanceof Every every) {
+            int period = every.getPeriod().getValue();
+            if (period <= 0) {
+                throw new IllegalArgumentException("Unsupported period: " + every.asString());
+            }
+            var base = every.getExpression();
+            if (base instanceof Always) {
+                return range(min, max, period);
+            } else if (base instanceof On on) {
+                return range(value(on.getTime(), min, max), max, period);
+            } else if (base instanceof Between between
+                && between.getFrom() instanceof IntegerFieldValue from
+                && between.getTo() instanceof IntegerFieldValue to) {
+                return range(value(from, min, max), value(to, min, max), period);
+            }
+            throw new IllegalArgumentException("Unsupported step base: " + every.asString());
+        } else if (expression instanceof And and) {
+            long bits = 0;
+            for (var part : and.getExpressions()) {
+                bits |= compileExpression(part, min, max);
+            }
+            return bits;
+        }
+        throw new IllegalArgumentException("Unsupported expression: " + expression.asString());
+    }
+
+    private static int value(IntegerFieldValue value, int min, int max) {
+        int v = value.getValue();
+        if (v < min || v > max) {
+            throw new IllegalArgumentException("Value " + v + " is out of range [" + min + ", " + max + "]");
+        }
+        return v;
+    }
+
+    private static long range(int from, int to, int step) {
+        if (from > to) {
+            throw new IllegalArgumentException("Unsupported wrapping range: " + from + "-" + to);
+        }
+        long bits = 0;
+        for (int i = from; i <= to; i += step) {
+            bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    private final long minutes;
+    private final long hours;
+    private final long daysOfMonth;
+    private final long months;
+    private final boolean dayOfMonthRestricted;
+    private final boolean dayOfWeekRestricted;
+    private final boolean matchBothDays;
+    // Indexed by the day-of-week of the 1st, with 0 = Sunday, bit N is set if day N of the month matches the DoW
+    private final long[] dayOfWeekDayMasks = new long[7];
+
+    private BitsetExecutionTime(long minutes, long hours, long daysOfMonth, long months, long daysOfWeek,
+                                boolean dayOfMonthRestricted, boolean dayOfWeekRestricted,
+                                boolean matchBothDays) {
+        this.minutes = minutes;
+        this.hours = hours;
+        this.daysOfMonth = daysOfMonth;
+        this.months = months;
+        this.dayOfMonthRestricted = dayOfMonthRestricted;
+        this.dayOfWeekRestricted = dayOfWeekRestricted;
+        this.matchBothDays = matchBothDays;
+        for (int firstDow = 0; firstDow < 7; firstDow++) {
+            long mask = 0;
+            for (int day = 1; day <= 31; day++) {
+                if ((daysOfWeek & (1L << ((firstDow + day - 1) % 7))) != 0) {
+                    mask |= 1L << day;
+                }
+            }
+            dayOfWeekDayMasks[firstDow] = mask;
+        }
+    }
+
+    @Override
+    public Optional<ZonedDateTime> nextExecution(ZonedDateTime date) {
+        var zone = date.getZone();
+        var rules = zone.getRules();
+        var next = nextInstant(rules, date.toInstant(), false, date.getYear() + SEARCH_YEARS);
+        if (next == null) {
+            return Optional.empty();
+        }
+        var nextOffset = rules.getOffset(next);
+        // cron-utils issue #446: crossing into a DST overlap from a match shouldn't repeat less-than-hourly schedules
+        if (nextOffset.getTotalSeconds() < date.getOffset().getTotalSeconds()
+            && date.getSecond() == 0 && matchesLocal(date.toLocalDateTime())) {
+            var nextNext = nextInstant(rules, next, false, date.getYear() + SEARCH_YEARS);
+            if (nextNext != null && Duration.between(next, nextNext).toHours() > 1) {
+                next = nextInstant(rules, date.toInstant().plus(1, ChronoUnit.HOURS), false,
+                    date.getYear() + SEARCH_YEARS);
+                if (next == null) {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.of(ZonedDateTime.ofInstant(next, zone));
+    }
+
+    @Override
+    public Optional<Duration> timeToNextExecution(ZonedDateTime date) {
+        return nextExecution(date).map(next -> Duration.between(date, next));
+    }
+
+    @Override
+    public Optional<ZonedDateTime> lastExecution(ZonedDateTime date) {
+        var zone = date.getZone();
+        var previous = previousInstant(zone.getRules(), date.toInstant(), date.getYear() - SEARCH_YEARS);
+        return Optional.ofNullable(previous).map(i -> ZonedDateTime.ofInstant(i, zone));
+    }
+
+    @Override
+    public Optional<Duration> timeFromLastExecution(ZonedDateTime date) {
+        return lastExecution(date).map(last -> Duration.between(last, date));
+    }
+
+    @Override
+    public boolean isMatch(ZonedDateTime date) {
+        return matchesLocal(date.toLocalDateTime().truncatedTo(ChronoUnit.MINUTES));
+    }
+
+    private boolean matchesLocal(LocalDateTime local) {
+        return (minutes & (1L << local.getMinute())) != 0
+            && (hours & (1L << local.getHour())) != 0
+            && (months & (1L << local.getMonthValue())) != 0
+            && (dayMask(local.getYear(), local.getMonthValue()) & (1L << local.getDayOfMonth())) != 0;
+    }
+
+    /**
+     * Find the first matching instant after {@code cursor}, or at it if {@code inclusive}.
+     */
+    private Instant nextInstant(ZoneRules rules, Instant cursor, boolean inclusive, int limitYear) {
+        while (true) {
+            ZoneOffset offset = rules.getOffset(cursor);
+            var transition = rules.nextTransition(cursor);
+            var local = LocalDateTime.ofEpochSecond(cursor.getEpochSecond(), cursor.getNano(), offset);
+            var truncated = local.truncatedTo(ChronoUnit.MINUTES);
+            var from = inclusive && truncated.equals(local) ? truncated : truncated.plusMinutes(1);
+            var match = nextLocal(from, limitYear);
+            if (match == null) {
+                return null;
+            }
+            // Offset is constant until the transition, so local order is instant order
+            if (transition == null || match.isBefore(transition.getDateTimeBefore())) {
+                return match.toInstant(offset);
+            }
+            cursor = transition.getInstant();
+            inclusive = true;
+        }
+    }
+
+    /**
+     * Find the last matching instant strictly before {@code cursor}.
+     */
+    private Instant previousInstant(ZoneRules rules, Instant cursor, int limitYear) {
+        while (true) {
+            // The offset in effect just before the cursor
+            ZoneOffset offset = rules.getOffset(cursor.minusNanos(1));
+            var transition = rules.previousTransition(cursor);
+            var local = LocalDateTime.ofEpochSecond(cursor.getEpochSecond(), cursor.getNano(), offset);
+            var truncated = local.truncatedTo(ChronoUnit.MINUTES);
+            var from = truncated.equals(local) ? truncated.minusMinutes(1) : truncated;
+            var match = previousLocal(from, limitYear);
+            if (match == null) {
+                return null;
+            }
+            if (transition == null || !match.isBefore(transition.getDateTimeAfter())) {
+                return match.toInstant(offset);
+            }
+            cursor = transition.getInstant();
+        }
+    }
+
+    private LocalDateTime nextLocal(LocalDateTime from, int limitYear) {
+        int year = from.getYear();
+        int month = from.getMonthValue();
+        int day = from.getDayOfMonth();
+        int hour = from.getHour();
+        int minute = from.getMinute();
+        while (year <= limitYear) {
+            int m = nextBit(months, month);
+            if (m < 0) {
+                year++;
+                month = 1;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                continue;
+            }
+            if (m != month) {
+                month = m;
+                day = 1;
+                hour = 0;
+                minute = 0;
+            }
+            int d = nextBit(dayMask(year, month), day);
+            if (d < 0) {
+                month++;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                continue;
+            }
+            if (d != day) {
+                day = d;
+                hour = 0;
+                minute = 0;
+            }
+            int h = nextBit(hours, hour);
+            if (h < 0) {
+                day++;
+                hour = 0;
+                minute = 0;
+                continue;
+            }
+            if (h != hour) {
+                hour = h;
+                minute = 0;
+            }
+            int mi = nextBit(minutes, minute);
+            if (mi < 0) {
+                hour++;
+                minute = 0;
+                continue;
+            }
+            return LocalDateTime.of(year, month, day, hour, mi);
+        }
+        return null;
+    }
+
+    private LocalDateTime previousLocal(LocalDateTime from, int limitYear) {
+        int year = from.getYear();
+        int month = from.getMonthValue();
+        int day = from.getDayOfMonth();
+        int hour = from.getHour();
+        int minute = from.getMinute();
+        while (year >= limitYear) {
+            int m = previousBit(months, month);
+            if (m < 1) {
+                year--;
+                month = 12;
+                day = 31;
+                hour = 23;
+                minute = 59;
+                continue;
+            }
+            if (m != month) {
+                month = m;
+                day = 31;
+                hour = 23;
+                minute = 59;
+            }
+            int d = previousBit(dayMask(year, month), day);
+            if (d < 1) {
+                month--;
+                day = 31;
+                hour = 23;
+                minute = 59;
+                continue;
+            }
+            if (d != day) {
+                day = d;
+                hour = 23;
+                minute = 59;
+            }
+            int h = previousBit(hours, hour);
+            if (h < 0) {
+                day--;
+                hour = 23;
+                minute = 59;
+                continue;
+            }
+            if (h != hour) {
+                hour = h;
+                minute = 59;
+            }
+            int mi = previousBit(minutes, minute);
+            if (mi < 0) {
+                hour--;
+                minute = 59;
+                continue;
+            }
+            return LocalDateTime.of(year, month, day, hour, mi);
+        }
+        return null;
+    }
+
+    /**
+     * {@return the days of the given month that match, as a bitset}
+     */
+    private long dayMask(int year, int month) {
+        long lengthMask = (1L << (lengthOfMonth(year, month) + 1)) - 2;
+        long dowMask = dayOfWeekDayMasks[dayOfWeekOfFirst(year, month)];
+        long mask;
+        if (dayOfMonthRestricted && dayOfWeekRestricted) {
+            // Like Vixie cron, UNIX crons match if either one does
+            mask = matchBothDays ? daysOfMonth & dowMask : daysOfMonth | dowMask;
+        } else if (dayOfWeekRestricted) {
+            mask = dowMask;
+        } else {
+            mask = daysOfMonth;
+        }
+        return mask & lengthMask;
+    }
+
+    private static int nextBit(long bits, int from) {
+        if (from > 63) {
+            return -1;
+        }
+        long masked = bits & (-1L << from);
+        return masked == 0 ? -1 : Long.numberOfTrailingZeros(masked);
+    }
+
+    private static int previousBit(long bits, int from) {
+        if (from < 0) {
+            return -1;
+        }
+        long masked = from >= 63 ? bits : bits & ((1L << (from + 1)) - 1);
+        return masked == 0 ? -1 : 63 - Long.numberOfLeadingZeros(masked);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * {@return the day of week of the first of the month, with 0 = Sunday}
+     */
+    private static int dayOfWeekOfFirst(int year, int month) {
+        // Sakamoto's method
+        int y = month < 3 ? year - 1 : year;
+        return Math.floorMod(y + Math.floorDiv(y, 4) - Math.floorDiv(y, 100) + Math.floorDiv(y, 400)
+            + SAKAMOTO_MONTH_OFFSETS[month - 1] + 1, 7);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Collects keys that need saving, and saves the latest value of each after a delay.
+ *
+ * <p>
+ * Only keys are queued, so marking the same key many times holds nothing extra. The values are snapshotted when the
+ * save runs, so the intermediate states are never made at all. Both marking and snapshotting happen while holding
+ * the owner's lock, so a save sees the owner's state between two changes, never in the middle of one.
+ * </p>
+ *
+ * <p>
+ * At most one save runs at a time, on the given executor. {@link #flush()} skips the rest of the delay, e.g. before
+ * exiting. If a save fails, the writer can hand its keys back with {@link #retry(Collection, Duration)}.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the snapshot type
+ */
+public final class ConflatingSink<K, V> {
+    private final Object lock;
+    private final Duration delay;
+    private final int maxPending;
+    private final Executor executor;
+    private final Function<? super K, ? extends V> snapshotter;
+    private final Consumer<? super List<V>> writer;
+    // All guarded by lock
+    private Set<K> pending = new LinkedHashSet<>();
+    private long conflatedCount;
+    private @Nullable Save scheduledSave;
+    private boolean saving;
+    // How long to wait before retrying, if a save failed and nothing was scheduled since
+    private @Nullable Duration retryDelay;
+    // Flushes waiting for the next save, and for the running one
+    private List<CompletableFuture<Void>> flushes = new ArrayList<>();
+    private List<CompletableFuture<Void>> runningFlushes = new ArrayList<>();
+
+    /**
+     * Create a sink.
+     *
+     * @param lock the lock guarding the snapshotted state, held while marking and snapshotting
+     * @param delay how long to wait for more changes before saving
+     * @param maxPending how many keys make a save happen right away
+     * @param executor where to snapshot and save
+     * @param snapshotter makes the value to save for a key, while holding {@code lock}
+     * @param writer saves the values, without holding {@code lock}
+     */
+    public ConflatingSink(Object lock, Duration delay, int maxPending, Executor executor,
+                          Function<? super K, ? extends V> snapshotter, Consumer<? super List<V>> writer) {
+        this.lock = lock;
+        this.delay = delay;
+        this.maxPending = maxPending;
+        this.executor = executor;
+        this.snapshotter = snapshotter;
+        this.writer = writer;
+    }
+
+    /**
+     * Mark a key as needing to be saved.
+     *
+     * @param key the key
+     */
+    public void mark(K key) {
+        synchronized (lock) {
+            if (!pending.add(key)) {
+                conflatedCount++;
+            }
+            if (saving) {
+                // It will schedule another save when it's done
+                return;
+            }
+            if (scheduledSave == null) {
+                scheduledSave = new Save();
+                scheduledSave.schedule(pending.size() >= maxPending ? Duration.ZERO : delay);
+            } else if (pending.size() >= maxPending) {
+                scheduledSave.schedule(Duration.ZERO);
+            }
+        }
+    }
+
+    /**
+     * Mark keys as needing to be saved again, after saving them failed. A save is made after the given delay, even if
+     * there are no keys, unless one is made sooner.
+     *
+     * @param keys the keys that weren't saved
+     * @param after how long to wait before trying again
+     */
+    public void retry(Collection<? extends K> keys, Duration after) {
+        synchronized (lock) {
+            pending.addAll(keys);
+            if (saving) {
+                // It will schedule the retry when it's done
+                retryDelay = after;
+                return;
+            }
+            if (scheduledSave == null) {
+                scheduledSave = new Save();
+                scheduledSave.schedule(after);
+            }
+        }
+    }
+
+    /**
+     * Save the marked keys now, rather than after the delay. A retry waiting for its delay is made now too.
+     *
+     * @return a future completing once every key marked before this call is saved, or has had a save attempted
+     */
+    public CompletableFuture<Void> flush() {
+        synchronized (lock) {
+            if (pending.isEmpty() && !saving && scheduledSave == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            var future = new CompletableFuture<Void>();
+            if (pending.isEmpty() && saving && retryDelay == null) {
+                // Everything marked is in the running save
+                runningFlushes.add(future);
+            } else {
+                flushes.add(future);
+                if (scheduledSave != null) {
+                    scheduledSave.schedule(Duration.ZERO);
+                }
+            }
+            return future;
+        }
+    }
+
+    /**
+     * {@return how many keys are waiting to be saved}
+     */
+    public int getDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * {@return how many times a key was marked while already waiting, i.e. how many intermediate states were skipped}
+     */
+    public long getConflatedCount() {
+        synchronized (lock) {
+            return conflatedCount;
+        }
+    }
+
+    private final class Save implements Runnable {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final List<Disposable> timers = new ArrayList<>(2);
+
+        void schedule(Duration after) {
+            if (after.isZero()) {
+                executor.execute(this);
+            } else {
+                timers.add(Schedulers.parallel().schedule(
+                    () -> executor.execute(this), after.toNanos(), TimeUnit.NANOSECONDS
+                ));
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            var values = new ArrayList<V>();
+            synchronized (lock) {
+                timers.forEach(Disposable::dispose);
+                scheduledSave = null;
+                saving = true;
+                for (K key : pending) {
+                    values.add(snapshotter.apply(key));
+                }
+                pending = new LinkedHashSet<>();
+                runningFlushes = flushes;
+                flushes = new ArrayList<>();
+            }
+            @Nullable Throwable failure = null;
+            try {
+                writer.accept(values);
+            } catch (Throwable t) {
+                failure = t;
+                throw t;
+            } finally {
+                List<CompletableFuture<Void>> done;
+                synchronized (lock) {
+                    saving = false;
+                    done = runningFlushes;
+                    runningFlushes = new ArrayList<>();
+                    if (!pending.isEmpty() || retryDelay != null) {
+                        scheduledSave = new Save();
+                        if (pending.size() >= maxPending || !flushes.isEmpty()) {
+                            scheduledSave.schedule(Duration.ZERO);
+                        } else {
+                            scheduledSave.schedule(retryDelay != null ? retryDelay : delay);
+                        }
+                        retryDelay = null;
+                    }
+                }
+                for (CompletableFuture<Void> future : done) {
+                    if (failure == null) {
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(failure);
+                    }
+                }
+            }
+        }
+    }
+}
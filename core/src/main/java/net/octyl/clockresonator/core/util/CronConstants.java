@@ -16,7 +16,7 @@
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-package net.octyl.clockresonator.app.util;
+package net.octyl.clockresonator.core.util;
 
 import com.cronutils.descriptor.CronDescriptor;
 import com.cronutils.model.CronType;
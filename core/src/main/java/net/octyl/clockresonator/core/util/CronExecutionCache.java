@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.util;
+
+import com.cronutils.model.Cron;
+import com.cronutils.model.time.ExecutionTime;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Caches for cron math, which is expensive enough that it shouldn't be re-done on every access.
+ */
+public final class CronExecutionCache {
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final LoadingCache<String, ExecutionTime> EXECUTION_TIMES = CacheBuilder.newBuilder()
+        .maximumSize(1024)
+        .recordStats()
+        .build(CacheLoader.from(expression -> compile(CronConstants.PARSER.parse(expression))));
+    // Weak keys use identity, which is fine as the owners are immutable
+    private static final Cache<Object, Instant> COMPUTED_INSTANTS = CacheBuilder.newBuilder()
+        .weakKeys()
+        .recordStats()
+        .build();
+
+    private static ExecutionTime compile(Cron cron) {
+        try {
+            return BitsetExecutionTime.compile(cron);
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug(() -> "Falling back to cron-utils for " + cron.asString(), e);
+            return ExecutionTime.forCron(cron);
+        }
+    }
+
+    /**
+     * {@return the shared execution time for the given cron}
+     */
+    public static ExecutionTime executionTime(Cron cron) {
+        return EXECUTION_TIMES.getUnchecked(cron.asString());
+    }
+
+    /**
+     * Compute an instant on behalf of an immutable owner, only once for the owner's lifetime.
+     *
+     * @param owner the owner of the instant
+     * @param computation the computation, which must always give the same result for the owner
+     * @return the computed instant
+     */
+    public static Instant computeFor(Object owner, Supplier<Instant> computation) {
+        var instant = COMPUTED_INSTANTS.getIfPresent(owner);
+        if (instant == null) {
+            instant = computation.get();
+            COMPUTED_INSTANTS.put(owner, instant);
+        }
+        return instant;
+    }
+
+    /**
+     * {@return the hit/miss statistics of the execution time cache}
+     */
+    public static CacheStats executionTimeStats() {
+        return EXECUTION_TIMES.stats();
+    }
+
+    /**
+     * {@return the hit/miss statistics of the computed instant cache}
+     */
+    public static CacheStats computedInstantStats() {
+        return COMPUTED_INSTANTS.stats();
+    }
+
+    private CronExecutionCache() {
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A sorted collection with {@code O(log n)} insert, remove, and positional access, backed by an AVL tree where each
+ * node knows the size of its subtree.
+ *
+ * <p>
+ * This class is not thread-safe, callers must synchronize externally.
+ * </p>
+ *
+ * @param <E> the element type
+ */
+public final class OrderStatisticTree<E> {
+    private static final class Node<E> {
+        private final E value;
+        private Node<E> left;
+        private Node<E> right;
+        private int height = 1;
+        private int size = 1;
+
+        private Node(E value) {
+            this.value = value;
+        }
+    }
+
+    private final Comparator<? super E> comparator;
+    private Node<E> root;
+    // Out-params from the recursive operations, to avoid allocating result holders
+    private int lastIndex;
+
+    public OrderStatisticTree(Comparator<? super E> comparator) {
+        this.comparator = Objects.requireNonNull(comparator);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Get the element at the given position.
+     *
+     * @param index the position
+     * @return the element
+     */
+    public E get(int index) {
+        Objects.checkIndex(index, size());
+        var node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * Find the position of an element.
+     *
+     * @param value the element to find
+     * @return the position of an element comparing equal to {@code value}, or {@code -1} if there is none
+     */
+    public int indexOf(E value) {
+        var node = root;
+        int base = 0;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                base += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return base + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Count the elements that compare less than the given one, i.e. the position it would be inserted at if it were
+     * ordered before equal elements.
+     *
+     * @param value the element to compare against, it doesn't need to be in the tree
+     * @return the number of smaller elements
+     */
+    public int countLessThan(E value) {
+        var node = root;
+        int count = 0;
+        while (node != null) {
+            if (comparator.compare(node.value, value) < 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Insert an element. Elements comparing equal to existing ones are inserted after them.
+     *
+     * @param value the element to insert
+     * @return the position it was inserted at
+     */
+    public int add(E value) {
+        lastIndex = 0;
+        root = add(root, value);
+        return lastIndex;
+    }
+
+    private Node<E> add(Node<E> node, E value) {
+        if (node == null) {
+            return new Node<>(value);
+        }
+        if (comparator.compare(value, node.value) < 0) {
+            node.left = add(node.left, value);
+        } else {
+            lastIndex += size(node.left) + 1;
+            node.right = add(node.right, value);
+        }
+        return rebalance(node);
+    }
+
+    /**
+     * Remove an element comparing equal to the given one.
+     *
+     * @param value the element to remove
+     * @return the position it was removed from, or {@code -1} if there was no such element
+     */
+    public int remove(E value) {
+        lastIndex = -1;
+        root = remove(root, value, 0);
+        return lastIndex;
+    }
+
+    private Node<E> remove(Node<E> node, E value, int base) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = comparator.compare(value, node.value);
+        if (cmp < 0) {
+            node.left = remove(node.left, value, base);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, value, base + size(node.left) + 1);
+        } else {
+            lastIndex = base + size(node.left);
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Replace with the in-order successor
+            var successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            var replacement = new Node<>(successor.value);
+            replacement.right = removeMin(node.right);
+            replacement.left = node.left;
+            return rebalance(replacement);
+        }
+        return rebalance(node);
+    }
+
+    private Node<E> removeMin(Node<E> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * {@return a copy of the elements, in order}
+     */
+    public List<E> toList() {
+        var list = new ArrayList<E>(size());
+        var stack = new ArrayDeque<Node<E>>();
+        var node = root;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            list.add(node.value);
+            node = node.right;
+        }
+        return list;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static <E> Node<E> update(Node<E> node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    private static <E> Node<E> rebalance(Node<E> node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static <E> Node<E> rotateRight(Node<E> node) {
+        var newRoot = node.left;
+        node.left = newRoot.right;
+        newRoot.right = update(node);
+        return update(newRoot);
+    }
+
+    private static <E> Node<E> rotateLeft(Node<E> node) {
+        var newRoot = node.right;
+        node.right = newRoot.left;
+        newRoot.left = update(node);
+        return update(newRoot);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import net.octyl.clockresonator.core.util.CronConstants;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryTaskSnapshotTest {
+    private static byte[] write(List<TaskEntry> entries) {
+        return BinaryTaskSnapshot.write(entries);
+    }
+
+    private static List<TaskEntry> read(byte[] contents) throws IOException {
+        var entries = new ArrayList<TaskEntry>();
+        BinaryTaskSnapshot.read(contents, entries::add);
+        return entries;
+    }
+
+    @Test
+    void roundTripsEntries() throws Exception {
+        var entries = TaskEntryFixtures.entries();
+
+        assertThat(TaskEntryFixtures.comparable(read(write(entries))))
+            .containsExactlyElementsIn(TaskEntryFixtures.comparable(entries))
+            .inOrder();
+    }
+
+    @Test
+    void roundTripsNoEntries() throws Exception {
+        assertThat(read(write(List.of()))).isEmpty();
+    }
+
+    @Test
+    void roundTripsMoreThanABuffer() throws Exception {
+        // More than the writer sizes its output for up front, so it has to grow
+        var entries = new ArrayList<TaskEntry>();
+        for (int i = 0; i < 5_000; i++) {
+            entries.addAll(TaskEntryFixtures.entries());
+        }
+
+        assertThat(TaskEntryFixtures.comparable(read(write(entries))))
+            .containsExactlyElementsIn(TaskEntryFixtures.comparable(entries))
+            .inOrder();
+    }
+
+    @Test
+    void roundTripsExtremeInstants() throws Exception {
+        // The furthest apart instants can be, relative to each other and to the previous entry
+        var entries = List.<TaskEntry>of(
+            new OneTimeTaskEntry("min", "", Instant.MIN, Instant.MAX),
+            new OneTimeTaskEntry("max", "", Instant.MAX, Instant.MIN.plusNanos(1)),
+            new OneTimeTaskEntry("min-again", "", Instant.MIN.plusNanos(1_000), Instant.EPOCH)
+        );
+
+        assertThat(read(write(entries))).containsExactlyElementsIn(entries).inOrder();
+    }
+
+    @Test
+    void readsVersion1Snapshots() throws Exception {
+        // Written by the version 1 writer
+        var contents = Base64.getDecoder().decode(
+            "Q1JUUwEEgD8rjE4abU4Pm3osXY4fSmsFV2F0ZXKAhbGLDKu03nX/xQoAAQdzdGFuZHVwB1N0YW5kdXAADUV1cm9wZS9Mb25k"
+                + "b24BCzAgOSAqICogMS01AaD+CgCXOQB4AAEFbGF0ZXIFTGF0ZXIAAQAACsBwAAILZm9ydG5pZ2h0bHkHRmlsdGVycwIDHAG9"
+                + "cAABAA=="
+        );
+        var base = TaskEntryFixtures.BASE;
+        var cron = CronConstants.PARSER.parse("0 9 * * 1-5");
+        var london = ZoneId.of("Europe/London");
+        var expected = List.<TaskEntry>of(
+            new OneTimeTaskEntry(
+                "3f2b8c4e-1a6d-4e0f-9b7a-2c5d8e1f4a6b", "Water", base.plusNanos(123_456_789), base.minusSeconds(86_400)
+            ),
+            new CronTaskEntry(
+                "standup", "Standup", london, cron, Optional.of(base.plusSeconds(3_600)), base.minusSeconds(60), base
+            ),
+            new CronTaskEntry(
+                "later", "Later", london, cron, Optional.empty(), base.plusNanos(5_000), base.plusSeconds(7_200)
+            ),
+            new IntervalTaskEntry(
+                "fortnightly", "Filters", Period.of(1, -2, 14), Optional.of(base.plusSeconds(1)), base
+            )
+        );
+
+        assertThat(TaskEntryFixtures.comparable(read(contents)))
+            .containsExactlyElementsIn(TaskEntryFixtures.comparable(expected))
+            .inOrder();
+    }
+
+    @Test
+    void rejectsTornSnapshots() throws Exception {
+        var contents = write(TaskEntryFixtures.entries());
+        for (int length = 0; length < contents.length; length++) {
+            var torn = Arrays.copyOf(contents, length);
+            assertThrows(IOException.class, () -> read(torn), "Snapshot torn at " + length);
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() {
+        var json = "[{\"@type\":\"oneTime\"}]".getBytes(StandardCharsets.UTF_8);
+
+        var thrown = assertThrows(IOException.class, () -> read(json));
+        assertThat(thrown).hasMessageThat().isEqualTo("Not a binary task snapshot");
+    }
+}
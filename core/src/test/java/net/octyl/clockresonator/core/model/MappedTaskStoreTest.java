@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedTaskStoreTest {
+    // The parts of the file layout the crash tests damage
+    private static final int HEADER_SIZE = 64;
+    private static final int CLEAN_OFFSET = 12;
+    private static final int RECORD_SIZE = 96;
+
+    @TempDir
+    Path dir;
+
+    private Path file(String name) {
+        return dir.resolve(name);
+    }
+
+    private static List<Object> contents(MappedTaskStore store) {
+        var entries = new ArrayList<TaskEntry>();
+        store.forEach(entries::add);
+        return TaskEntryFixtures.comparable(entries);
+    }
+
+    private static Optional<Object> stored(MappedTaskStore store, String id) {
+        return store.get(id).map(TaskEntryFixtures::comparable);
+    }
+
+    /**
+     * Copy the files of a store that is still open, as they would be found after a crash.
+     */
+    private Path crashImage(Path file, String name) throws IOException {
+        var image = file(name);
+        for (String suffix : List.of("", ".names", ".index", ".due")) {
+            Files.copy(file.resolveSibling(file.getFileName() + suffix), image.resolveSibling(name + suffix));
+        }
+        return image;
+    }
+
+    private static void damage(Path file, int offset, byte[] bytes) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), offset);
+        }
+    }
+
+    private static byte[] read(Path file, int offset, int length) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var buffer = ByteBuffer.allocate(length);
+            channel.read(buffer, offset);
+            return buffer.array();
+        }
+    }
+
+    private static int base(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    @Test
+    void roundTripsEntries() throws Exception {
+        var entries = TaskEntryFixtures.entries();
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            for (TaskEntry entry : entries) {
+                store.put(entry);
+            }
+        }
+
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            assertThat(store.size()).isEqualTo(entries.size());
+            assertThat(contents(store)).containsExactlyElementsIn(TaskEntryFixtures.comparable(entries)).inOrder();
+            for (TaskEntry entry : entries) {
+                assertThat(stored(store, entry.id())).isEqualTo(Optional.of(TaskEntryFixtures.comparable(entry)));
+            }
+            assertThat(store.get("missing")).isEqualTo(Optional.empty());
+        }
+    }
+
+    @Test
+    void roundTripsReplacementsAndDeletes() throws Exception {
+        var entries = new ArrayList<>(TaskEntryFixtures.entries());
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            for (TaskEntry entry : entries) {
+                store.put(entry);
+            }
+            // A longer name needs a larger block, a shorter one fits in the old one
+            var longer = new OneTimeTaskEntry(
+                "one-time", "Water the plants, and the ones outside too", TaskEntryFixtures.BASE, Instant.EPOCH
+            );
+            var shorter = new IntervalTaskEntry(
+                "yearly", "Renew", ((IntervalTaskEntry) entries.get(6)).interval(), Optional.empty(), Instant.EPOCH
+            );
+            store.put(longer);
+            store.put(shorter);
+            entries.set(0, longer);
+            entries.set(6, shorter);
+            // Moves the last record into the gap
+            store.delete(entries.remove(2).id());
+            store.delete("missing");
+        }
+
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            assertThat(store.size()).isEqualTo(entries.size());
+            for (TaskEntry entry : entries) {
+                assertThat(stored(store, entry.id())).isEqualTo(Optional.of(TaskEntryFixtures.comparable(entry)));
+            }
+            assertThat(store.get("standup")).isEqualTo(Optional.empty());
+        }
+    }
+
+    @Test
+    void roundTripsPastTheInitialCapacity() throws Exception {
+        var entries = new ArrayList<TaskEntry>();
+        for (int i = 0; i < 5_000; i++) {
+            var at = TaskEntryFixtures.BASE.plusSeconds(i);
+            entries.add(new OneTimeTaskEntry("entry-" + i, "Entry " + i, at, at.plusSeconds(60)));
+        }
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            for (TaskEntry entry : entries) {
+                store.put(entry);
+            }
+        }
+
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            assertThat(contents(store)).containsExactlyElementsIn(entries).inOrder();
+            assertThat(store.get("entry-4321")).isEqualTo(Optional.of(entries.get(4321)));
+            var from = TaskEntryFixtures.BASE.plusSeconds(60 + 100);
+            assertThat(store.findByNextOccurrence(from, from.plusSeconds(3)))
+                .containsExactlyElementsIn(entries.subList(100, 103))
+                .inOrder();
+        }
+    }
+
+    private static List<String> dueIds(MappedTaskStore store, Instant from, Instant to) throws IOException {
+        return store.findByNextOccurrence(from, to).stream().map(TaskEntry::id).toList();
+    }
+
+    @Test
+    void findsEntriesByNextOccurrenceAfterChanges() throws Exception {
+        var at = TaskEntryFixtures.BASE;
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            for (int i = 0; i < 10; i++) {
+                store.put(new OneTimeTaskEntry("entry-" + i, "Entry " + i, Instant.EPOCH, at.plusSeconds(10 - i)));
+            }
+            assertThat(dueIds(store, at.plusSeconds(3), at.plusSeconds(6)))
+                .containsExactly("entry-7", "entry-6", "entry-5").inOrder();
+
+            // Moves entry-9 into entry-2's record, and entry-4 to the front
+            store.delete("entry-2");
+            store.put(new OneTimeTaskEntry("entry-4", "Renamed", Instant.EPOCH, at));
+            // Only a rename, which leaves the order alone
+            store.put(new OneTimeTaskEntry("entry-5", "Renamed", Instant.EPOCH, at.plusSeconds(5)));
+            assertThat(dueIds(store, at, at.plusSeconds(11)))
+                .containsExactly(
+                    "entry-4", "entry-9", "entry-8", "entry-7", "entry-6", "entry-5", "entry-3", "entry-1", "entry-0"
+                )
+                .inOrder();
+            assertThat(dueIds(store, at.plusSeconds(11), Instant.MAX)).isEmpty();
+
+            // Flushed before merging, so the next open has to rebuild the sorted file
+            store.put(new OneTimeTaskEntry("entry-0", "Entry 0", Instant.EPOCH, at.plusMillis(2500)));
+            store.flush();
+            var image = crashImage(file("tasks"), "stale");
+            try (var reopened = MappedTaskStore.open(image)) {
+                assertThat(dueIds(reopened, at, at.plusSeconds(3)))
+                    .containsExactly("entry-4", "entry-9", "entry-8", "entry-0").inOrder();
+            }
+        }
+
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            assertThat(dueIds(store, at, at.plusSeconds(3)))
+                .containsExactly("entry-4", "entry-9", "entry-8", "entry-0").inOrder();
+        }
+    }
+
+    @Test
+    void keepsUnflushedChangesAfterACrash() throws Exception {
+        var entries = TaskEntryFixtures.entries();
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            store.put(entries.get(0));
+            store.flush();
+            for (TaskEntry entry : entries.subList(1, entries.size())) {
+                store.put(entry);
+            }
+            store.delete(entries.get(0).id());
+            var image = crashImage(file("tasks"), "crashed");
+            assertThat(read(image, CLEAN_OFFSET, 1)).isEqualTo(new byte[] {0});
+
+            try (var recovered = MappedTaskStore.open(image)) {
+                assertThat(contents(recovered)).containsExactlyElementsIn(contents(store));
+                assertThat(recovered.get(entries.get(0).id())).isEqualTo(Optional.empty());
+                assertThat(TaskEntryFixtures.comparable(recovered.findByNextOccurrence(Instant.MIN, Instant.MAX)))
+                    .containsExactlyElementsIn(TaskEntryFixtures.comparable(
+                        store.findByNextOccurrence(Instant.MIN, Instant.MAX)
+                    ))
+                    .inOrder();
+            }
+            assertThat(read(image, CLEAN_OFFSET, 1)).isEqualTo(new byte[] {1});
+        }
+    }
+
+    @Test
+    void dropsTornEntriesAfterACrash() throws Exception {
+        var entries = TaskEntryFixtures.entries();
+        Path image;
+        try (var store = MappedTaskStore.open(file("tasks"))) {
+            for (TaskEntry entry : entries) {
+                store.put(entry);
+            }
+            store.flush();
+            store.put(new OneTimeTaskEntry("one-time", "Renamed", Instant.EPOCH, Instant.EPOCH));
+            image = crashImage(file("tasks"), "crashed");
+        }
+        // An unknown type in the flags, and a delete that stopped half-way through moving the last record into the
+        // first one's place, leaving two copies of the last entry sharing its strings
+        damage(image, base(1), new byte[] {0x7F});
+        damage(image, base(0), read(image, base(entries.size() - 1), RECORD_SIZE));
+
+        var kept = TaskEntryFixtures.comparable(entries.subList(2, entries.size()));
+        try (var recovered = MappedTaskStore.open(image)) {
+            assertThat(contents(recovered)).containsExactlyElementsIn(kept);
+            assertThat(recovered.get(entries.get(1).id())).isEqualTo(Optional.empty());
+            // The freed blocks can be used again
+            recovered.put(entries.get(0));
+            recovered.put(entries.get(1));
+        }
+
+        try (var reopened = MappedTaskStore.open(image)) {
+            assertThat(contents(reopened)).containsExactlyElementsIn(TaskEntryFixtures.comparable(entries));
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws Exception {
+        Files.writeString(file("tasks"), "{\"@op\":\"put\"}\n".repeat(10));
+
+        var thrown = assertThrows(IOException.class, () -> MappedTaskStore.open(file("tasks")));
+        assertThat(thrown).hasMessageThat().isEqualTo("Not a task store");
+    }
+}
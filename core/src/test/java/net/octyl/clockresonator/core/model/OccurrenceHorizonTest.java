@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import net.octyl.clockresonator.core.util.CronConstants;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class OccurrenceHorizonTest {
+    private static final Instant NOW = Instant.parse("2021-06-01T12:00:00Z");
+    private static final Duration LENGTH = Duration.ofHours(48);
+
+    private static TaskEntryManager manager() throws Exception {
+        var manager = new TaskEntryManager(new TaskStore() {
+            @Override
+            public void load(TaskLoadStrategy strategy, Consumer<List<TaskJournalRecord>> chunkConsumer,
+                             Supplier<? extends Collection<? extends TaskEntry>> loadedEntries) {
+            }
+
+            @Override
+            public long save(List<TaskJournalRecord> records,
+                             Supplier<? extends Collection<? extends TaskEntry>> currentEntries) {
+                return 0;
+            }
+        });
+        manager.initialize(TaskLoadStrategy.SEQUENTIAL).get(10, TimeUnit.SECONDS);
+        return manager;
+    }
+
+    @Test
+    void coversItsWholeLength() throws Exception {
+        var manager = manager();
+        var horizon = new OccurrenceHorizon(manager, LENGTH, Clock.fixed(NOW, ZoneOffset.UTC));
+        manager.put(new CronTaskEntry(
+            "quarterly", "Every quarter hour", ZoneOffset.UTC, CronConstants.PARSER.parse("*/15 * * * *"),
+            Optional.empty(), NOW.minusSeconds(1), null
+        ));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (horizon.dueWithin(LENGTH).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Still covered until the next refill, which moves it forward by 1/48th of the length
+        assertThat(horizon.getEnd()).isAtLeast(NOW.plus(LENGTH).plus(LENGTH.dividedBy(48)));
+        var occurrences = horizon.dueWithin(LENGTH);
+        assertThat(occurrences).hasSize(48 * 4);
+        assertThat(occurrences.get(0).time()).isEqualTo(NOW);
+        assertThat(occurrences.get(occurrences.size() - 1).time()).isEqualTo(NOW.plus(LENGTH).minusSeconds(15 * 60));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import net.octyl.clockresonator.core.util.CronConstants;
+
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Entries covering each type and encoding case, for the store and snapshot tests.
+ */
+final class TaskEntryFixtures {
+    static final Instant BASE = Instant.parse("2021-06-01T12:00:00Z");
+
+    /**
+     * {@return an entry of each type, with both kinds of ID, shared and distinct zones and expressions, and instants
+     * with nano and micro precision, before and after the previous one}
+     */
+    static List<TaskEntry> entries() {
+        var weekdays = CronConstants.PARSER.parse("0 9 * * 1-5");
+        return List.of(
+            new OneTimeTaskEntry("one-time", "Water the plants", BASE, BASE.plusSeconds(3600)),
+            new OneTimeTaskEntry(
+                "3f2b8c4e-1a6d-4e0f-9b7a-2c5d8e1f4a6b", "\u00dcn\u00efc\u00f6d\u00e9 \u23f0", BASE.plusNanos(123_456_789),
+                BASE.minusSeconds(86_400 * 400).plusNanos(5_000)
+            ),
+            new CronTaskEntry(
+                "standup", "Standup", ZoneId.of("America/New_York"), weekdays,
+                Optional.of(BASE.plusSeconds(86_400 * 30)), BASE.minusSeconds(60), BASE
+            ),
+            new CronTaskEntry(
+                "9d1e7a3c-5b2f-4c8d-a0e6-7f3b1d9c2e54", "Standup, but in London", ZoneId.of("Europe/London"),
+                weekdays, Optional.empty(), BASE, BASE.plusSeconds(7200)
+            ),
+            new CronTaskEntry(
+                "nightly", "", ZoneId.of("Europe/London"), CronConstants.PARSER.parse("*/15 0-3 * * *"),
+                Optional.empty(), Instant.EPOCH, BASE
+            ),
+            new IntervalTaskEntry("fortnightly", "Clean the filters", Period.ofWeeks(2), Optional.empty(), BASE),
+            new IntervalTaskEntry(
+                "yearly", "Renew " + "the domain ".repeat(40), Period.of(1, 2, 3), Optional.of(BASE.plusSeconds(1)),
+                BASE.minusSeconds(1)
+            )
+        );
+    }
+
+    /**
+     * Make an entry comparable by value, as {@link com.cronutils.model.Cron} has no {@code equals}.
+     *
+     * @param entry the entry
+     * @return the entry, or its fields with the cron expression as a string
+     */
+    static Object comparable(TaskEntry entry) {
+        if (entry instanceof CronTaskEntry cron) {
+            return List.of(
+                cron.id(), cron.name(), cron.timeZone(), cron.cron().asString(), cron.stopTime(),
+                cron.lastOccurrence(), cron.executionBase()
+            );
+        }
+        return entry;
+    }
+
+    static List<Object> comparable(List<? extends TaskEntry> entries) {
+        return entries.stream().map(TaskEntryFixtures::comparable).toList();
+    }
+
+    private TaskEntryFixtures() {
+    }
+}
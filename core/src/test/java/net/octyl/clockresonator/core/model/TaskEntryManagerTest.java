@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import net.octyl.clockresonator.core.inject.JsonModule;
+import net.octyl.clockresonator.core.persist.Durability;
+import net.octyl.clockresonator.core.persist.PersistenceService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TaskEntryManagerTest {
+    private static TaskEntry entry(String id, String name) {
+        return new OneTimeTaskEntry(id, name, Instant.EPOCH, Instant.EPOCH.plusSeconds(60));
+    }
+
+    // Loads two chunks, pausing between them so the test can make changes
+    private static final class PausingStore implements TaskStore {
+        private final CountDownLatch firstChunkLoaded = new CountDownLatch(1);
+        private final CountDownLatch resumeLoad = new CountDownLatch(1);
+        private final CountDownLatch saved = new CountDownLatch(1);
+        private volatile boolean loading;
+        private volatile boolean savedWhileLoading;
+
+        @Override
+        public void load(TaskLoadStrategy strategy, Consumer<List<TaskJournalRecord>> chunkConsumer,
+                         Supplier<? extends Collection<? extends TaskEntry>> loadedEntries) {
+            loading = true;
+            try {
+                chunkConsumer.accept(List.of(
+                    new TaskJournalRecord.Put(entry("a", "saved a")),
+                    new TaskJournalRecord.Put(entry("b", "saved b"))
+                ));
+                firstChunkLoaded.countDown();
+                assertThat(Uninterruptibles.awaitUninterruptibly(resumeLoad, 10, TimeUnit.SECONDS)).isTrue();
+                // Give a save that doesn't wait for the load the chance to run
+                Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
+                // As if replaying the journal
+                chunkConsumer.accept(List.of(
+                    new TaskJournalRecord.Put(entry("a", "journaled a")),
+                    new TaskJournalRecord.Delete("b"),
+                    new TaskJournalRecord.Put(entry("c", "journaled c"))
+                ));
+            } finally {
+                loading = false;
+            }
+        }
+
+        @Override
+        public long save(List<TaskJournalRecord> records,
+                         Supplier<? extends Collection<? extends TaskEntry>> currentEntries) {
+            if (loading) {
+                savedWhileLoading = true;
+            }
+            saved.countDown();
+            return 0;
+        }
+    }
+
+    @Test
+    void keepsChangesMadeWhileLoading() throws Exception {
+        var store = new PausingStore();
+        var manager = new TaskEntryManager(store);
+        var loaded = manager.initialize(TaskLoadStrategy.SEQUENTIAL);
+        assertThat(store.firstChunkLoaded.await(10, TimeUnit.SECONDS)).isTrue();
+
+        manager.batch(tx -> {
+            tx.put(entry("a", "edited a"));
+            tx.put(entry("b", "edited b"));
+            tx.delete("c");
+            // Enough changes to save right away, rather than after the delay
+            IntStream.range(0, 1024).forEach(i -> tx.put(entry("filler " + i, "filler")));
+        });
+        store.resumeLoad.countDown();
+        loaded.get(10, TimeUnit.SECONDS);
+
+        assertThat(manager.getEntry("a").map(TaskEntry::name)).isEqualTo(Optional.of("edited a"));
+        assertThat(manager.getEntry("b").map(TaskEntry::name)).isEqualTo(Optional.of("edited b"));
+        assertThat(manager.getEntry("c")).isEqualTo(Optional.empty());
+        assertThat(store.saved.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(store.savedWhileLoading).isFalse();
+    }
+
+    @Test
+    void flushSavesPendingChanges(@TempDir Path dir) throws Exception {
+        var tasksFile = dir.resolve("tasks.json");
+        // Nothing would be written during the test without flushing
+        var persistence = new PersistenceService(Durability.NONE, Duration.ofHours(1));
+        var manager = new TaskEntryManager(JsonModule.provideMapper(), tasksFile, TaskSnapshotFormat.JSON, persistence);
+        manager.initialize(TaskLoadStrategy.SEQUENTIAL).get(10, TimeUnit.SECONDS);
+        manager.put(entry("a", "flushed"));
+        manager.flush().get(10, TimeUnit.SECONDS);
+
+        var reloaded = new TaskEntryManager(JsonModule.provideMapper(), tasksFile);
+        reloaded.initialize(TaskLoadStrategy.SEQUENTIAL).get(10, TimeUnit.SECONDS);
+        assertThat(reloaded.getEntry("a").map(TaskEntry::name)).isEqualTo(Optional.of("flushed"));
+    }
+
+    // Fails the first saves, then keeps what it's given
+    private static final class FailingStore implements TaskStore {
+        private final AtomicInteger failuresLeft;
+        private final List<TaskJournalRecord> saved = new CopyOnWriteArrayList<>();
+
+        private FailingStore(int failures) {
+            this.failuresLeft = new AtomicInteger(failures);
+        }
+
+        @Override
+        public void load(TaskLoadStrategy strategy, Consumer<List<TaskJournalRecord>> chunkConsumer,
+                         Supplier<? extends Collection<? extends TaskEntry>> loadedEntries) {
+        }
+
+        @Override
+        public long save(List<TaskJournalRecord> records,
+                         Supplier<? extends Collection<? extends TaskEntry>> currentEntries) throws IOException {
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IOException("No space left on device");
+            }
+            saved.addAll(records);
+            return 0;
+        }
+    }
+
+    @Test
+    void retriesFailedSaves() throws Exception {
+        var store = new FailingStore(2);
+        var manager = new TaskEntryManager(store);
+        var failures = new CopyOnWriteArrayList<Throwable>();
+        manager.addSaveFailureListener(failures::add);
+        manager.initialize(TaskLoadStrategy.SEQUENTIAL).get(10, TimeUnit.SECONDS);
+        manager.put(entry("a", "a"));
+        manager.flush().get(10, TimeUnit.SECONDS);
+        manager.put(entry("b", "b"));
+        manager.flush().get(10, TimeUnit.SECONDS);
+        assertThat(store.saved).isEmpty();
+        manager.flush().get(10, TimeUnit.SECONDS);
+
+        assertThat(store.saved.stream().map(TaskJournalRecord::id).toList()).containsExactly("a", "b");
+        // Only the first of a run of failures is reported
+        assertThat(failures).hasSize(1);
+        assertThat(failures.get(0)).hasMessageThat().isEqualTo("No space left on device");
+    }
+
+    @Test
+    void repairsTheStoreAfterAFailedWrite(@TempDir Path dir) throws Exception {
+        var tasksFile = dir.resolve("tasks.json");
+        var journalFile = dir.resolve("tasks.json.journal");
+        var persistence = new PersistenceService(Durability.NONE, Duration.ofHours(1));
+        var manager = new TaskEntryManager(JsonModule.provideMapper(), tasksFile, TaskSnapshotFormat.JSON, persistence);
+        var failures = new CopyOnWriteArrayList<Throwable>();
+        manager.addSaveFailureListener(failures::add);
+        manager.initialize(TaskLoadStrategy.SEQUENTIAL).get(10, TimeUnit.SECONDS);
+        // Appending fails while the journal is a directory, after the save itself returned
+        Files.createDirectory(journalFile);
+        manager.put(entry("a", "kept"));
+        manager.flush().get(10, TimeUnit.SECONDS);
+        assertThat(failures).hasSize(1);
+        Files.delete(journalFile);
+        // Runs the retry now, rather than after its delay
+        manager.flush().get(10, TimeUnit.SECONDS);
+
+        var reloaded = new TaskEntryManager(JsonModule.provideMapper(), tasksFile);
+        reloaded.initialize(TaskLoadStrategy.SEQUENTIAL).get(10, TimeUnit.SECONDS);
+        assertThat(reloaded.getEntry("a").map(TaskEntry::name)).isEqualTo(Optional.of("kept"));
+    }
+
+    @Test
+    void undoesBatchesThatThrow() throws Exception {
+        var store = new FailingStore(0);
+        var manager = new TaskEntryManager(store);
+        manager.initialize(TaskLoadStrategy.SEQUENTIAL).get(10, TimeUnit.SECONDS);
+        manager.putAll(List.of(entry("a", "a"), entry("b", "b")));
+        manager.flush().get(10, TimeUnit.SECONDS);
+        var heard = new CopyOnWriteArrayList<TaskEntryChange>();
+        manager.addListener(heard::addAll);
+        heard.clear();
+
+        var thrown = assertThrows(IllegalStateException.class, () -> manager.batch(tx -> {
+            tx.put(entry("a", "edited a"));
+            tx.put(entry("a", "edited a again"));
+            tx.delete("b");
+            tx.put(entry("c", "c"));
+            throw new IllegalStateException("Invalid entry");
+        }));
+        manager.flush().get(10, TimeUnit.SECONDS);
+
+        assertThat(thrown).hasMessageThat().isEqualTo("Invalid entry");
+        assertThat(manager.getEntries()).containsExactly(entry("a", "a"), entry("b", "b"));
+        assertThat(manager.dueBefore(Instant.MAX).stream().map(TaskOccurrence::entry).toList())
+            .containsExactly(entry("a", "a"), entry("b", "b"));
+        assertThat(heard).isEmpty();
+        assertThat(store.saved.stream().map(TaskJournalRecord::id).toList()).containsExactly("a", "b");
+        // Still usable afterwards
+        manager.put(entry("c", "c"));
+        assertThat(manager.getEntry("c")).isEqualTo(Optional.of(entry("c", "c")));
+    }
+}
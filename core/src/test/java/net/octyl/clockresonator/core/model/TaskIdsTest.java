@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class TaskIdsTest {
+    @Test
+    void parsesCanonicalUuids() {
+        var random = UUID.randomUUID();
+        assertThat(TaskIds.asCanonicalUuid(random.toString())).isEqualTo(random);
+        var extremes = new UUID(-1, 0);
+        assertThat(TaskIds.asCanonicalUuid(extremes.toString())).isEqualTo(extremes);
+        var digits = UUID.fromString("01234567-89ab-cdef-0123-456789abcdef");
+        assertThat(TaskIds.asCanonicalUuid("01234567-89ab-cdef-0123-456789abcdef")).isEqualTo(digits);
+    }
+
+    @Test
+    void rejectsOtherIds() {
+        // Would not be stored as the same string
+        assertThat(TaskIds.asCanonicalUuid("01234567-89AB-cdef-0123-456789abcdef")).isNull();
+        assertThat(TaskIds.asCanonicalUuid("1-2-3-4-5")).isNull();
+        assertThat(TaskIds.asCanonicalUuid("01234567-89ab-cdef-0123-456789abcdeg")).isNull();
+        assertThat(TaskIds.asCanonicalUuid("g1234567-89ab-cdef-0123-456789abcdef")).isNull();
+        assertThat(TaskIds.asCanonicalUuid("01234567-89ab-cdef-0123-456789abcde\u00e1")).isNull();
+        assertThat(TaskIds.asCanonicalUuid("01234567089ab-cdef-0123-456789abcdef")).isNull();
+        assertThat(TaskIds.asCanonicalUuid("01234567-89ab-cdef-0123-456789abcdef0")).isNull();
+        assertThat(TaskIds.asCanonicalUuid("standup")).isNull();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.model;
+
+import net.octyl.clockresonator.core.inject.JsonModule;
+import net.octyl.clockresonator.core.persist.Durability;
+import net.octyl.clockresonator.core.persist.PersistenceService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+class TaskJournalTest {
+    @TempDir
+    Path dir;
+
+    // Only commits when flushed
+    private final PersistenceService persistence = new PersistenceService(Durability.NONE, Duration.ofHours(1));
+
+    private TaskJournal journal() {
+        return new TaskJournal(
+            JsonModule.provideMapper(), dir.resolve("tasks.json"), TaskSnapshotFormat.JSON, persistence
+        );
+    }
+
+    private static TaskEntry entry(String id) {
+        return new OneTimeTaskEntry(id, "Entry " + id, Instant.EPOCH, Instant.EPOCH.plusSeconds(60));
+    }
+
+    private static Map<String, TaskEntry> load(TaskJournal journal) throws Exception {
+        var entries = new LinkedHashMap<String, TaskEntry>();
+        journal.load(TaskLoadStrategy.SEQUENTIAL, chunk -> {
+            for (TaskJournalRecord record : chunk) {
+                if (record instanceof TaskJournalRecord.Put put) {
+                    entries.put(put.id(), put.entry());
+                } else {
+                    entries.remove(record.id());
+                }
+            }
+        }, entries::values);
+        return entries;
+    }
+
+    private void save(TaskJournal journal, TaskEntry changed, TaskEntry... current) throws Exception {
+        journal.save(List.of(new TaskJournalRecord.Put(changed)), () -> List.of(current));
+        persistence.flush().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void compactsAfterAFailedAppend() throws Exception {
+        var journal = journal();
+        load(journal);
+        var journalFile = dir.resolve("tasks.json.journal");
+        // Appending fails while the journal is a directory
+        Files.createDirectory(journalFile);
+        save(journal, entry("a"), entry("a"));
+        Files.delete(journalFile);
+        save(journal, entry("b"), entry("a"), entry("b"));
+
+        assertThat(load(journal()).values()).containsExactly(entry("a"), entry("b")).inOrder();
+    }
+
+    @Test
+    void compactsAgainAfterAFailedCompaction() throws Exception {
+        var journal = journal();
+        load(journal);
+        var journalFile = dir.resolve("tasks.json.journal");
+        var snapshotFile = dir.resolve("tasks.json");
+        Files.createDirectory(journalFile);
+        save(journal, entry("a"), entry("a"));
+        Files.delete(journalFile);
+        // Replacing the snapshot fails while it's a directory that isn't empty
+        Files.writeString(Files.createDirectory(snapshotFile).resolve("blocker"), "");
+        save(journal, entry("b"), entry("a"), entry("b"));
+        Files.delete(snapshotFile.resolve("blocker"));
+        Files.delete(snapshotFile);
+        save(journal, entry("c"), entry("a"), entry("b"), entry("c"));
+
+        assertThat(load(journal()).values()).containsExactly(entry("a"), entry("b"), entry("c")).inOrder();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.persist;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PersistenceServiceTest {
+    private static final Duration LATER = Duration.ofMinutes(1);
+
+    @TempDir
+    Path dir;
+
+    private final PersistenceService service = new PersistenceService(Durability.NONE, LATER);
+
+    @Test
+    void commitsFilesInOrder() throws Exception {
+        // The failing file stops the commit, so only the files ordered before it are written
+        var blocker = Files.writeString(dir.resolve("blocker"), "");
+        var journal = dir.resolve("journal");
+        var snapshot = dir.resolve("snapshot");
+        var journalWrite = service.append(journal, bytes("first\n"), LATER);
+        service.append(snapshot, bytes("stale"), LATER);
+        var failingWrite = service.replace(blocker.resolve("failing"), bytes("failing"), LATER);
+        // Appending keeps the journal where it was first written, replacing moves the snapshot after the failing file
+        service.append(journal, bytes("second\n"), LATER);
+        var snapshotWrite = service.replace(snapshot, bytes("snapshot"), LATER);
+        service.flush().get(10, TimeUnit.SECONDS);
+
+        journalWrite.get(10, TimeUnit.SECONDS);
+        assertThat(Files.readString(journal)).isEqualTo("first\nsecond\n");
+        assertThrows(CompletionException.class, failingWrite::join);
+        assertThrows(CompletionException.class, snapshotWrite::join);
+        assertThat(Files.exists(snapshot)).isFalse();
+    }
+
+    @Test
+    void commitsWritesFromEverySourceTogether() throws Exception {
+        var sharedService = new PersistenceService(Durability.NONE, Duration.ofMillis(200));
+        var journal = dir.resolve("tasks.json.journal");
+        var windowState = dir.resolve("main.json");
+        var journalWrite = sharedService.append(journal, bytes("record\n"), sharedService.latencyBudget("tasks"));
+        // Well within the budget, but long enough for a commit of the journal alone to happen
+        Thread.sleep(50);
+        var windowWrite = sharedService.replace(
+            windowState, bytes("{}"), sharedService.latencyBudget("windowState")
+        );
+        // Writes complete once their whole commit is written, so the later file is there if they share a commit
+        var sharedCommit = journalWrite.thenApply(ignored -> Files.exists(windowState));
+
+        assertThat(sharedCommit.get(10, TimeUnit.SECONDS)).isTrue();
+        windowWrite.get(10, TimeUnit.SECONDS);
+        assertThat(Files.readString(journal)).isEqualTo("record\n");
+    }
+
+    @Test
+    void failsFilesAfterAFailedOne() throws Exception {
+        var journal = dir.resolve("journal");
+        Files.writeString(journal, "records\n");
+        // The snapshot can't be written, as its directory is a file
+        var blocker = Files.writeString(dir.resolve("blocker"), "");
+        var snapshotWrite = service.replace(blocker.resolve("snapshot"), bytes("snapshot"), LATER);
+        var truncation = service.replace(journal, new byte[0], LATER);
+        service.flush().get(10, TimeUnit.SECONDS);
+
+        assertThrows(CompletionException.class, snapshotWrite::join);
+        var truncationError = assertThrows(CompletionException.class, truncation::join);
+        assertThat(truncationError).hasCauseThat().isInstanceOf(IOException.class);
+        assertThat(Files.readString(journal)).isEqualTo("records\n");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) Octavia Togami <https://octyl.net>
+ * Copyright (c) contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.octyl.clockresonator.core.util;
+
+import com.cronutils.model.Cron;
+import com.cronutils.model.CronType;
+import com.cronutils.model.definition.CronDefinitionBuilder;
+import com.cronutils.model.time.ExecutionTime;
+import com.cronutils.parser.CronParser;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Compares {@link BitsetExecutionTime} against cron-utils' {@link ExecutionTime#forCron(Cron)}.
+ *
+ * <p>
+ * cron-utils skips valid times in a few cases, such as DST gaps at midnight or half-hour DST shifts. Where the two
+ * disagree, the bitset answer must be such a skipped time: closer to the start, and matching the cron in local time.
+ * </p>
+ */
+class BitsetExecutionTimeTest {
+    private static final List<String> DST_ZONES = List.of(
+        "America/New_York", "Europe/London", "Europe/Berlin", "Australia/Lord_Howe", "Asia/Kathmandu",
+        "America/Sao_Paulo", "Pacific/Apia", "America/Santiago", "Asia/Tehran"
+    );
+    private static final List<String> EXPRESSIONS = List.of(
+        "0 0 29 2 *", "30 2 * * *", "30 1 * * *", "0 * * * *", "*/20 1-3 * * *", "0 0 13 * 5", "0 0 1,15 * 1",
+        "0 0 * * 7", "0 0 31 * *", "15 0 * * *", "0 0 * * *", "* * * * *", "59 23 31 12 *", "0 12 * * 1-5",
+        "0 2 * * 0"
+    );
+    // How many executions are followed from each start
+    private static final int STEPS = 15;
+
+    @Test
+    void followsCronUtilsAroundDstTransitions() {
+        var random = new Random(42);
+        for (String zoneName : DST_ZONES) {
+            var zone = ZoneId.of(zoneName);
+            for (String expression : EXPRESSIONS) {
+                var cron = CronConstants.PARSER.parse(expression);
+                var transition = Instant.parse("2015-01-01T00:00:00Z");
+                for (int i = 0; i < 6; i++) {
+                    var next = zone.getRules().nextTransition(transition);
+                    if (next == null) {
+                        break;
+                    }
+                    transition = next.getInstant();
+                    var start = transition.plusSeconds((random.nextInt(8 * 60) - 4 * 60) * 60L);
+                    compare(cron, ZonedDateTime.ofInstant(start, zone));
+                }
+            }
+        }
+    }
+
+    @Test
+    void followsCronUtilsForRandomExpressions() {
+        var random = new Random(42);
+        var zones = new ArrayList<>(DST_ZONES);
+        zones.add("UTC");
+        var expressions = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            expressions.add(randomExpression(random));
+        }
+        for (String expression : expressions) {
+            Cron cron;
+            try {
+                cron = CronConstants.PARSER.parse(expression);
+            } catch (IllegalArgumentException e) {
+                // Not every random expression is valid, e.g. a range that runs backwards
+                continue;
+            }
+            for (int i = 0; i < 4; i++) {
+                var zone = ZoneId.of(zones.get(random.nextInt(zones.size())));
+                var start = Instant.ofEpochSecond(1_500_000_000L + (long) (random.nextDouble() * 400_000_000L));
+                var transition = zone.getRules().nextTransition(start);
+                // Mostly start close to a transition, where mistakes are most likely
+                if (transition != null && random.nextInt(4) != 0) {
+                    start = transition.getInstant().plusSeconds((long) ((random.nextDouble() - 0.7) * 4 * 60) * 60);
+                }
+                start = start.plusNanos(random.nextBoolean() ? 0 : random.nextInt(1_000_000_000));
+                compare(cron, ZonedDateTime.ofInstant(start, zone));
+            }
+        }
+    }
+
+    @Test
+    void findsSparseExecutions() {
+        var executionTime = BitsetExecutionTime.compile(CronConstants.PARSER.parse("0 0 29 2 *"));
+        var start = ZonedDateTime.parse("2021-03-01T00:00:00Z");
+
+        assertThat(executionTime.nextExecution(start))
+            .isEqualTo(Optional.of(ZonedDateTime.parse("2024-02-29T00:00:00Z")));
+        assertThat(executionTime.lastExecution(start))
+            .isEqualTo(Optional.of(ZonedDateTime.parse("2020-02-29T00:00:00Z")));
+    }
+
+    @Test
+    void skipsTimesInDstGaps() {
+        var zone = ZoneId.of("America/New_York");
+        var executionTime = BitsetExecutionTime.compile(CronConstants.PARSER.parse("30 2 * * *"));
+
+        // 2021-03-14 02:30 doesn't exist in New York
+        assertThat(executionTime.nextExecution(ZonedDateTime.of(2021, 3, 14, 0, 0, 0, 0, zone)))
+            .isEqualTo(Optional.of(ZonedDateTime.of(2021, 3, 15, 2, 30, 0, 0, zone)));
+    }
+
+    @Test
+    void runsDailyExecutionsOnceInDstOverlaps() {
+        var zone = ZoneId.of("America/New_York");
+        var executionTime = BitsetExecutionTime.compile(CronConstants.PARSER.parse("30 1 * * *"));
+
+        // 2021-11-07 01:30 happens twice in New York
+        var first = executionTime.nextExecution(ZonedDateTime.of(2021, 11, 7, 0, 0, 0, 0, zone)).orElseThrow();
+        assertThat(first).isEqualTo(ZonedDateTime.of(2021, 11, 7, 1, 30, 0, 0, zone));
+        assertThat(executionTime.nextExecution(first))
+            .isEqualTo(Optional.of(ZonedDateTime.of(2021, 11, 8, 1, 30, 0, 0, zone)));
+    }
+
+    @Test
+    void rejectsOtherCronTypes() {
+        var quartz = new CronParser(CronDefinitionBuilder.instanceDefinitionFor(CronType.QUARTZ))
+            .parse("0 0 12 * * ?");
+
+        assertThrows(IllegalArgumentException.class, () -> BitsetExecutionTime.compile(quartz));
+    }
+
+    private static void compare(Cron cron, ZonedDateTime start) {
+        var expected = ExecutionTime.forCron(cron);
+        var actual = BitsetExecutionTime.compile(cron);
+        follow(cron, start, expected::nextExecution, actual::nextExecution, true);
+        follow(cron, start, expected::lastExecution, actual::lastExecution, false);
+    }
+
+    private static void follow(Cron cron, ZonedDateTime start,
+                               Function<ZonedDateTime, Optional<ZonedDateTime>> expectedStep,
+                               Function<ZonedDateTime, Optional<ZonedDateTime>> actualStep,
+                               boolean forward) {
+        var time = start;
+        for (int i = 0; i < STEPS; i++) {
+            var expected = expectedStep.apply(time).map(ZonedDateTime::toInstant);
+            var actual = actualStep.apply(time);
+            var message = (forward ? "next" : "last") + " execution of '" + cron.asString() + "' from " + time;
+            if (expected.isEmpty() || actual.isEmpty()) {
+                assertWithMessage(message).that(actual.map(ZonedDateTime::toInstant)).isEqualTo(expected);
+                return;
+            }
+            if (!actual.get().toInstant().equals(expected.get())) {
+                assertSkippedByCronUtils(message, cron, expected.get(), actual.get(), forward);
+            }
+            time = actual.get();
+        }
+    }
+
+    private static void assertSkippedByCronUtils(String message, Cron cron, Instant expected,
+                                                 ZonedDateTime actual, boolean forward) {
+        if (forward) {
+            assertWithMessage(message).that(actual.toInstant()).isLessThan(expected);
+        } else {
+            assertWithMessage(message).that(actual.toInstant()).isGreaterThan(expected);
+        }
+        // Without DST, cron-utils is reliable, so check the local time there
+        var local = actual.toLocalDateTime().atZone(ZoneOffset.UTC);
+        assertWithMessage(message + ", local time " + local + " should match")
+            .that(ExecutionTime.forCron(cron).isMatch(local))
+            .isTrue();
+    }
+
+    private static String randomExpression(Random random) {
+        var minute = random.nextInt(3) == 0 ? "*/" + (1 + random.nextInt(30)) : randomField(random, 0, 59);
+        var hour = random.nextInt(3) == 0 ? "*" : randomField(random, 0, 23);
+        return minute + " " + hour + " " + randomField(random, 1, 31) + " " + randomField(random, 1, 12) + " "
+            + randomField(random, 0, 7);
+    }
+
+    private static String randomField(Random random, int min, int max) {
+        int a = min + random.nextInt(max - min + 1);
+        int b = min + random.nextInt(max - min + 1);
+        return switch (random.nextInt(7)) {
+            case 0 -> "*";
+            case 1 -> String.valueOf(a);
+            case 2 -> Math.min(a, b) + "-" + Math.max(a, b);
+            case 3 -> "*/" + (1 + random.nextInt(Math.max(1, (max - min) / 2)));
+            case 4 -> Math.min(a, b) + "-" + Math.max(a, b) + "/" + (1 + random.nextInt(5));
+            case 5 -> a + "," + b;
+            default -> a + "/" + (1 + random.nextInt(10));
+        };
+    }
+}
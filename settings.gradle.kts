@@ -1,4 +1,5 @@
 enableFeaturePreview("VERSION_CATALOGS")
 
 rootProject.name = "clock-resonator"
+include("core")
 include("application")